@@ -23,7 +23,7 @@ import org.eclipse.smarthome.core.thing.ThingTypeUID;
 @NonNullByDefault
 public class ShellyBindingConstants {
 
-    private static final String           BINDING_ID                   = "shelly";
+    public static final String            BINDING_ID                   = "shelly";
 
     // List of all Thing Type UIDs
     public static final ThingTypeUID      THING_TYPE_SHELLY1           = new ThingTypeUID(BINDING_ID, "shelly1");
@@ -57,7 +57,11 @@ public class ShellyBindingConstants {
     public static final int               UPDATE_STATUS_INTERVAL       = 3; // check for updates every x sec
     public static final int               UPDATE_SKIP_COUNT            = 20; // update every x triggers or when a key was pressed
     public static final int               UPDATE_MIN_DELAY             = 15; // update every x triggers or when a key was pressed
-    public static final int               UPDATE_SETTINGS_INTERVAL     = 60; // check for updates every x sec
+    public static final int               UPDATE_SETTINGS_INTERVAL     = 3600; // safety refresh, changes are detected from the status
+    public static final int               UPDATE_EVENT_INTERVAL        = 300; // consistency check while the device pushes events
+    public static final int               UPDATE_COIOT_TIMEOUT         = 60; // CoIoT is active when a packet was received within x sec
+    public static final int               IO_MAX_REQUESTS              = 16; // max number of blocking device requests in parallel
+    public static final int               LIGHT_COMMAND_WINDOW_MS      = 100; // merge light commands received within x ms
 
     // Thing Configuration Properties
     public static final String            CONFIG_DEVICEIP              = "deviceIp";
@@ -84,6 +88,7 @@ public class ShellyBindingConstants {
     public static final String            PROPERTY_UPDATE_NEWV_ERS     = "updateNewVersion";
     public static final String            PROPERTY_MAX_POWER           = "maxPower";
     public static final String            PROPERTY_LIGHT_SENSOR        = "lightSensor";
+    public static final String            PROPERTY_STATUS_UNCHANGED    = "statusUnchanged";
 
     // Relay
     public static final String            CHANNEL_GROUP_RELAY_CONTROL  = "relay";
@@ -125,6 +130,7 @@ public class ShellyBindingConstants {
     public static final String            CHANNEL_SENSOR_LUX           = "lux";
     public static final String            CHANNEL_SENSOR_MOTION        = "motion";
     public static final String            CHANNEL_SENSOR_CHARGER       = "charger";
+    public static final String            CHANNEL_SENSOR_LAST_UPDATE   = "lastUpdate";
 
     public static final String            CHANNEL_GROUP_SENSE_CONTROL  = "control";
     public static final String            CHANNEL_SENSE_KEY            = "key";
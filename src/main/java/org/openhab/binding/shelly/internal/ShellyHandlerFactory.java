@@ -9,30 +9,43 @@ package org.openhab.binding.shelly.internal;
 
 import static org.openhab.binding.shelly.internal.ShellyBindingConstants.*;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Dictionary;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.commons.lang.Validate;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.net.NetworkAddressService;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
 import org.eclipse.smarthome.core.thing.binding.ThingHandler;
 import org.eclipse.smarthome.core.thing.binding.ThingHandlerFactory;
+import org.eclipse.smarthome.io.net.http.HttpClientFactory;
+import org.openhab.binding.shelly.internal.api.ShellyHttpApi;
+import org.openhab.binding.shelly.internal.api.ShellyProfileCache;
+import org.openhab.binding.shelly.internal.coap.ShellyCoIoTListener;
 import org.openhab.binding.shelly.internal.config.ShellyBindingConfiguration;
 import org.openhab.binding.shelly.internal.handler.ShellyDeviceListener;
 import org.openhab.binding.shelly.internal.handler.ShellyHandler;
 import org.openhab.binding.shelly.internal.handler.ShellyHandlerLight;
+import org.openhab.binding.shelly.internal.handler.ShellyIoExecutor;
+import org.openhab.binding.shelly.internal.handler.ShellyPollScheduler;
+import org.openhab.binding.shelly.internal.handler.ShellyStartupController;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Version;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,14 +58,23 @@ import org.slf4j.LoggerFactory;
  */
 @Component(service = { ThingHandlerFactory.class, ShellyHandlerFactory.class }, immediate = true, configurationPid = "binding.shelly")
 public class ShellyHandlerFactory extends BaseThingHandlerFactory {
-    private final Logger                    logger                     = LoggerFactory.getLogger(ShellyHandlerFactory.class);
+    private final Logger                            logger                     = LoggerFactory.getLogger(ShellyHandlerFactory.class);
 
-    private NetworkAddressService           networkAddressService;
-    private final Set<ShellyDeviceListener> deviceListeners            = new CopyOnWriteArraySet<>();
+    private NetworkAddressService                   networkAddressService;
+    private HttpClientFactory                       httpClientFactory;
+    private HttpClient                              httpClient;
+    private ShellyIoExecutor                        ioExecutor;
+    private ShellyPollScheduler                     pollScheduler;
+    private ShellyStartupController                 startupController;
+    private ShellyProfileCache                      profileCache;
+    private ShellyCoIoTListener                     coiotListener;
+    private final Map<String, ShellyDeviceListener> listenersByName            = new ConcurrentHashMap<>(); // device name -> handler
+    private final Map<String, ShellyDeviceListener> listenersByMac             = new ConcurrentHashMap<>(); // mac address -> handler
 
-    private static final Set<ThingTypeUID>  SUPPORTED_THING_TYPES_UIDS = ShellyBindingConstants.SUPPORTED_THING_TYPES_UIDS;
-    private static boolean                  initialized                = false;
-    ShellyBindingConfiguration              bindingConfig              = new ShellyBindingConfiguration();
+    private static final Set<ThingTypeUID>          SUPPORTED_THING_TYPES_UIDS = ShellyBindingConstants.SUPPORTED_THING_TYPES_UIDS;
+    private static final String                     THREADPOOL_NAME            = "thingHandler";
+    private static boolean                          initialized                = false;
+    ShellyBindingConfiguration                      bindingConfig              = new ShellyBindingConfiguration();
 
     /**
      * Activate the bundle: save properties
@@ -67,6 +89,75 @@ public class ShellyHandlerFactory extends BaseThingHandlerFactory {
         logger.debug("Activate Shelly HandlerFactory");
         Validate.notNull(configProperties);
         bindingConfig.updateFromProperties(configProperties);
+
+        // All device APIs share a single http client: connections are pooled and kept alive between polls,
+        // the number of connections per device is bounded (Shelly devices can't handle many parallel requests)
+        httpClient = httpClientFactory.createHttpClient(BINDING_ID, null);
+        httpClient.setMaxConnectionsPerDestination(ShellyHttpApi.SHELLY_API_MAX_CONN_PER_HOST);
+        httpClient.setMaxRequestsQueuedPerDestination(ShellyHttpApi.SHELLY_API_MAX_QUEUED_PER_HOST);
+        httpClient.setIdleTimeout(ShellyHttpApi.SHELLY_API_IDLE_TIMEOUT);
+        httpClient.setConnectTimeout(ShellyHttpApi.SHELLY_API_TIMEOUT);
+        httpClient.setFollowRedirects(false);
+        try {
+            httpClient.start();
+        } catch (Exception e) {
+            logger.warn("Unable to start http client: {} ({})", e.getMessage(), e.getClass());
+        }
+
+        // a single timer wheel schedules the status updates of all things, the blocking device I/O runs on the binding's own executor
+        ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(THREADPOOL_NAME);
+        ioExecutor = new ShellyIoExecutor(IO_MAX_REQUESTS);
+        pollScheduler = new ShellyPollScheduler(scheduler, ioExecutor);
+
+        // things go online with the last known device profile, the profile gets revalidated in the background
+        profileCache = new ShellyProfileCache(ConfigConstants.getUserDataFolder());
+
+        // spread thing initialization after a restart
+        startupController = new ShellyStartupController(scheduler, ioExecutor, bindingConfig.startupWindow,
+                bindingConfig.startupMaxParallel);
+
+        // devices multicast a CoIoT packet once their status changes
+        if (bindingConfig.coapPort > 0) {
+            coiotListener = new ShellyCoIoTListener(this, bindingConfig.coapPort);
+            try {
+                coiotListener.start();
+            } catch (IOException e) {
+                logger.warn("Unable to start CoIoT listener on port {}: {} ({})", bindingConfig.coapPort, e.getMessage(), e.getClass());
+                coiotListener.stop();
+                coiotListener = null;
+            }
+        }
+    }
+
+    @Deactivate
+    @Override
+    protected void deactivate(ComponentContext componentContext) {
+        logger.debug("Deactivate Shelly HandlerFactory");
+        try {
+            if (coiotListener != null) {
+                coiotListener.stop();
+                coiotListener = null;
+            }
+            if (pollScheduler != null) {
+                pollScheduler.stop();
+                pollScheduler = null;
+            }
+            if (startupController != null) {
+                startupController.stop(); // delayed initializations must not run on a stopped executor / http client
+            }
+            if (ioExecutor != null) {
+                ioExecutor.shutdown();
+                ioExecutor = null;
+            }
+            if (httpClient != null) {
+                httpClient.stop();
+                httpClient = null;
+            }
+        } catch (Exception e) {
+            logger.debug("Unable to stop http client: {} ({})", e.getMessage(), e.getClass());
+        } finally {
+            super.deactivate(componentContext);
+        }
     }
 
     @Override
@@ -102,8 +193,13 @@ public class ShellyHandlerFactory extends BaseThingHandlerFactory {
 
     public void onEvent(String deviceName, String deviceIndex, String eventType, Map<String, String[]> parameters, String data) {
         try {
+            ShellyDeviceListener listener = listenersByName.get(deviceName.toLowerCase());
+            if (listener == null) {
+                logger.debug("Event for unknown or uninitialized device {} ignored (type={}, index={})", deviceName, eventType, deviceIndex);
+                return;
+            }
             logger.trace("Dispatch event to device handler {}", deviceName);
-            deviceListeners.forEach(listener -> listener.onEvent(deviceName, deviceIndex, eventType, parameters, data));
+            listener.onEvent(deviceName, deviceIndex, eventType, parameters, data);
         } catch (RuntimeException e) {
             logger.warn("ERROR: Exception processing callback: {} ({}), deviceName={}, type={}, index={}, parameters={}, data='{}'",
                     e.getMessage(), e.getClass(), deviceName, eventType, deviceIndex, parameters.toString(), data);
@@ -111,13 +207,32 @@ public class ShellyHandlerFactory extends BaseThingHandlerFactory {
         }
     }
 
+    public void onCoIoTUpdate(String deviceType, String mac, int serial) {
+        try {
+            ShellyDeviceListener listener = listenersByMac.get(mac.toLowerCase());
+            if (listener != null) {
+                listener.onCoIoTUpdate(deviceType, mac, serial);
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Exception processing CoIoT update: {} ({}), deviceType={}, mac={}, serial={}", e.getMessage(), e.getClass(),
+                    deviceType, mac, serial);
+        }
+    }
+
     /**
-     * Registers a listener, which is informed about device details.
+     * Registers a listener, which is informed about device details. Events are routed by device name (event callbacks) and
+     * mac address (CoIoT), a previous registration of the same listener is replaced.
      *
-     * @param listener the listener to register
+     * @param deviceName device name as used in the event urls
+     * @param mac        mac address of the device
+     * @param listener   the listener to register
      */
-    public void registerDeviceListener(ShellyDeviceListener listener) {
-        this.deviceListeners.add(listener);
+    public void registerDeviceListener(String deviceName, String mac, ShellyDeviceListener listener) {
+        unregisterDeviceListener(listener);
+        listenersByName.put(deviceName.toLowerCase(), listener);
+        if (!mac.isEmpty()) {
+            listenersByMac.put(mac.toLowerCase(), listener);
+        }
     }
 
     /**
@@ -126,7 +241,8 @@ public class ShellyHandlerFactory extends BaseThingHandlerFactory {
      * @param listener the listener to unregister
      */
     public void unregisterDeviceListener(ShellyDeviceListener listener) {
-        this.deviceListeners.remove(listener);
+        listenersByName.values().remove(listener);
+        listenersByMac.values().remove(listener);
     }
 
     public static String convertTimestamp(Long timestamp) {
@@ -146,6 +262,41 @@ public class ShellyHandlerFactory extends BaseThingHandlerFactory {
         return bindingConfig;
     }
 
+    /**
+     * @return the http client shared by all device APIs
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @return the poll scheduler shared by all thing handlers
+     */
+    public ShellyPollScheduler getPollScheduler() {
+        return pollScheduler;
+    }
+
+    /**
+     * @return the admission control for thing initialization
+     */
+    public ShellyStartupController getStartupController() {
+        return startupController;
+    }
+
+    /**
+     * @return the executor for blocking device requests
+     */
+    public ShellyIoExecutor getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * @return the persistent device profile cache
+     */
+    public ShellyProfileCache getProfileCache() {
+        return profileCache;
+    }
+
     @Reference
     protected void setNetworkAddressService(NetworkAddressService networkAddressService) {
         this.networkAddressService = networkAddressService;
@@ -155,4 +306,13 @@ public class ShellyHandlerFactory extends BaseThingHandlerFactory {
         this.networkAddressService = null;
     }
 
+    @Reference
+    protected void setHttpClientFactory(HttpClientFactory httpClientFactory) {
+        this.httpClientFactory = httpClientFactory;
+    }
+
+    protected void unsetHttpClientFactory(HttpClientFactory httpClientFactory) {
+        this.httpClientFactory = null;
+    }
+
 }
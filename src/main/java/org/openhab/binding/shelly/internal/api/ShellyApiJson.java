@@ -201,6 +201,11 @@ public class ShellyApiJson {
 
         public String                         reset; // Submitting a non-empty value will reset settings for the output to factory defaults.
         public String                         light_sensor;   // Sense: sensor type
+        public String                         report_url;     // HT/Smoke: URL gets posted on updates with sensor data
+
+        // not part of the document, set while the settings are parsed: the device supports these event urls
+        public transient boolean              hasBtnOnUrl;
+        public transient boolean              hasReportUrl;
     }
 
     public static final String SHELLY_API_MODE           = "mode";
@@ -225,25 +230,32 @@ public class ShellyApiJson {
     }
 
     public static class ShellySettingsStatus {
-        public ShellySettingsWiFiNetwork       wifi_sta;
-
-        public String                          time;
-        public Integer                         serial;
-        public Boolean                         has_update;
-        public String                          mac;
-        public ArrayList<ShellySettingsRelay>  relays;
-        public ArrayList<ShellySettingsRoller> rollers;
-        public ArrayList<ShellySettingsLight>  lights;
-        public ArrayList<ShellySettingsMeter>  meters;
-
-        public ShellySettingsUpdate            update;
-        public Long                            ram_total;
-        public Long                            ram_free;
-        public Long                            fs_size;
-        public Long                            fs_free;
-        public Long                            uptime;
-
-        public String                          json;
+        public ShellySettingsWiFiNetwork           wifi_sta;
+
+        public String                              time;
+        public Integer                             serial;
+        public Boolean                             has_update;
+        public String                              mac;
+        public ArrayList<ShellyShortStatusRelay>   relays;
+        public ArrayList<ShellyControlRoller>      rollers;
+        public ArrayList<ShellyStatusLightChannel> lights;
+        public ArrayList<ShellySettingsMeter>      meters;
+
+        public ShellySettingsUpdate                update;
+        public Long                                ram_total;
+        public Long                                ram_free;
+        public Long                                fs_size;
+        public Long                                fs_free;
+        public Long                                uptime;
+
+        // HT, Smoke, Sense: sensor data is part of the /status document
+        public ShellyStatusSensor._tmp             tmp;
+        public ShellyStatusSensor._hum             hum;
+        public ShellyStatusSensor._lux             lux;
+        public ShellyStatusSensor._bat             bat;
+        public Boolean                             motion;
+        public Boolean                             charger;
+        public String[]                            act_reasons;
     }
 
     public static class ShellyControlRelay {
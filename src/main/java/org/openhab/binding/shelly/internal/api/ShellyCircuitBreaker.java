@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@link ShellyCircuitBreaker} tracks the responsiveness of a single device. The request timeout adapts to the observed round
+ * trip time. After a number of failed requests the circuit opens: requests fail immediately without network access until the retry
+ * time is reached, then a single probe decides whether the circuit closes again. The retry interval grows exponentially with
+ * jitter while the device stays unreachable.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyCircuitBreaker {
+    public static final int    FAILURE_THRESHOLD = 3;      // consecutive failures before the circuit opens
+    public static final int    MIN_TIMEOUT_MS    = 1000;
+    public static final int    MIN_BACKOFF_MS    = 5000;
+    public static final int    MAX_BACKOFF_MS    = 300000;
+
+    public enum State {
+        CLOSED,    // device is responding
+        OPEN,      // device is not responding, requests are rejected
+        HALF_OPEN  // retry time reached, a probe is in progress
+    }
+
+    private final int          maxTimeoutMs;
+    private final LongSupplier clock;
+    private final Random       random            = new Random();
+
+    private State              state             = State.CLOSED;
+    private int                failures          = 0;
+    private long               backoffMs         = MIN_BACKOFF_MS;
+    private long               retryTime         = 0;
+    private double             srtt              = -1;     // smoothed round trip time in ms, -1: no sample yet
+    private double             rttvar            = 0;      // round trip time variation in ms
+
+    /**
+     * @param maxTimeoutMs upper limit of the request timeout, also used as long as no round trip time was measured
+     */
+    public ShellyCircuitBreaker(int maxTimeoutMs) {
+        this(maxTimeoutMs, System::currentTimeMillis);
+    }
+
+    /**
+     * @param maxTimeoutMs upper limit of the request timeout
+     * @param clock        time source in ms (the tests use a simulated clock)
+     */
+    ShellyCircuitBreaker(int maxTimeoutMs, LongSupplier clock) {
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Check if a request can be sent
+     *
+     * @return CLOSED: send the request, HALF_OPEN: the caller has to send a probe first, OPEN: reject the request
+     */
+    public synchronized State check() {
+        if ((state == State.OPEN) && (clock.getAsLong() >= retryTime)) {
+            state = State.HALF_OPEN;
+            return State.HALF_OPEN; // only the first caller gets the probe
+        }
+        return state == State.CLOSED ? State.CLOSED : State.OPEN;
+    }
+
+    /**
+     * The device answered, update the round trip time estimate and close the circuit
+     *
+     * @param rttMs round trip time in ms
+     */
+    public synchronized void onSuccess(long rttMs) {
+        if (srtt < 0) {
+            srtt = rttMs;
+            rttvar = rttMs / 2.0;
+        } else {
+            // Jacobson/Karels estimator as used for the TCP retransmission timeout
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttMs);
+            srtt = 0.875 * srtt + 0.125 * rttMs;
+        }
+        failures = 0;
+        backoffMs = MIN_BACKOFF_MS;
+        state = State.CLOSED;
+    }
+
+    /**
+     * The device didn't answer (timeout, connection refused). A failed probe re-opens the circuit with a longer retry interval.
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN) {
+            backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            open();
+        } else if ((state == State.CLOSED) && (failures >= FAILURE_THRESHOLD)) {
+            open();
+        }
+    }
+
+    private void open() {
+        // jitter: retry within [backoff/2, backoff] so devices which went down together don't get probed in sync
+        long delay = backoffMs / 2 + (long) (random.nextDouble() * backoffMs / 2);
+        retryTime = clock.getAsLong() + delay;
+        state = State.OPEN;
+    }
+
+    /**
+     * @return request timeout in ms based on the observed round trip time
+     */
+    public synchronized int getTimeout() {
+        if (srtt < 0) {
+            return maxTimeoutMs;
+        }
+        long timeout = Math.round(srtt + 4 * rttvar);
+        return (int) Math.max(MIN_TIMEOUT_MS, Math.min(maxTimeoutMs, timeout));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return ms until the next probe, 0 if the circuit is not open
+     */
+    public synchronized long getRetryDelay() {
+        return state == State.OPEN ? Math.max(0, retryTime - clock.getAsLong()) : 0;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+}
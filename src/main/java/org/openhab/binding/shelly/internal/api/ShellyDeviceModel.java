@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import static org.openhab.binding.shelly.internal.ShellyBindingConstants.*;
+import static org.openhab.binding.shelly.internal.api.ShellyApiJson.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+
+/**
+ * The {@link ShellyDeviceModel} is the static model registry. It maps the thing type to the device capabilities, the mode
+ * dependent capabilities are added on lookup. The capabilities are kept in a bitset of CAP_xxx flags.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyDeviceModel {
+    // model capabilities
+    public static final int                   CAP_PLUGS          = 1 << 0;  // Shelly Plug S
+    public static final int                   CAP_LED            = 1 << 1;  // status/power LEDs can be disabled
+    public static final int                   CAP_LIGHT          = 1 << 2;  // Bulb/RGBW2
+    public static final int                   CAP_BULB           = 1 << 3;  // Bulb only
+    public static final int                   CAP_SENSOR         = 1 << 4;  // HT, Smoke, Sense
+    public static final int                   CAP_SMOKE          = 1 << 5;  // Smoke only
+    public static final int                   CAP_SENSE          = 1 << 6;  // Sense only
+    public static final int                   CAP_BATTERY        = 1 << 7;  // battery powered device
+
+    // mode dependent capabilities
+    public static final int                   CAP_ROLLER         = 1 << 8;  // Shelly2 in roller mode
+    public static final int                   CAP_COLOR          = 1 << 9;  // Bulb/RGBW2 in color mode
+
+    // capabilities derived from the device settings
+    public static final int                   CAP_RELAYS         = 1 << 10; // at least 1 relay
+    public static final int                   CAP_METER          = 1 << 11; // at least 1 power meter
+
+    public static final int                   MAX_LIGHT_CHANNELS = 4;       // RGBW2 in white mode
+
+    private static final Map<String, Integer> MODELS;
+
+    static {
+        Map<String, Integer> models = new HashMap<>();
+        addModel(models, THING_TYPE_SHELLY1, 0);
+        addModel(models, THING_TYPE_SHELLY1PM, 0);
+        addModel(models, THING_TYPE_SHELLY1EM, 0);
+        addModel(models, THING_TYPE_SHELLY2_RELAY, 0);
+        addModel(models, THING_TYPE_SHELLY2_ROLLER, 0);
+        addModel(models, THING_TYPE_SHELLY25_RELAY, 0);
+        addModel(models, THING_TYPE_SHELLY25_ROLLER, 0);
+        addModel(models, THING_TYPE_SHELLY4PRO, 0);
+        addModel(models, THING_TYPE_SHELLYPLUG, 0);
+        addModel(models, THING_TYPE_SHELLYPLUGS, CAP_PLUGS | CAP_LED);
+        addModel(models, THING_TYPE_SHELLYBULB, CAP_LIGHT | CAP_BULB);
+        addModel(models, THING_TYPE_SHELLYRGBW2_COLOR, CAP_LIGHT);
+        addModel(models, THING_TYPE_SHELLYRGBW2_WHITE, CAP_LIGHT);
+        addModel(models, THING_TYPE_SHELLYHT, CAP_SENSOR | CAP_BATTERY);
+        addModel(models, THING_TYPE_SHELLYSMOKE, CAP_SENSOR | CAP_SMOKE | CAP_BATTERY);
+        addModel(models, THING_TYPE_SHELLYSENSE, CAP_SENSOR | CAP_SENSE | CAP_BATTERY);
+        addModel(models, THING_TYPE_SHELLYFLOOD, 0);
+        addModel(models, THING_TYPE_SHELLYEYE, 0);
+        MODELS = Collections.unmodifiableMap(models);
+    }
+
+    private static void addModel(Map<String, Integer> models, ThingTypeUID thingType, int capabilities) {
+        models.put(thingType.getId(), capabilities);
+    }
+
+    /**
+     * Get the capabilities of a model in the given mode
+     *
+     * @param thingType thing type id
+     * @param mode      device mode from the settings (relay/roller, color/white)
+     * @return capability bitset, 0 for an unknown model
+     */
+    public static int getCapabilities(String thingType, String mode) {
+        Integer model = MODELS.get(thingType.toLowerCase());
+        int capabilities = model != null ? model : 0;
+        if (mode.equalsIgnoreCase(SHELLY_MODE_ROLLER)) {
+            capabilities |= CAP_ROLLER;
+        }
+        if (((capabilities & CAP_LIGHT) != 0) && mode.equalsIgnoreCase(SHELLY_MODE_COLOR)) {
+            capabilities |= CAP_COLOR;
+        }
+        return capabilities;
+    }
+
+    /**
+     * @return true if the capability bitset includes all the given capabilities
+     */
+    public static boolean has(int capabilities, int cap) {
+        return (capabilities & cap) == cap;
+    }
+
+    /**
+     * Build the channel group names for a number of relays/rollers/meters. A single instance uses the group name without index.
+     *
+     * @param group group name
+     * @param count number of instances
+     * @return group names by index (0-based)
+     */
+    public static String[] buildGroupNames(String group, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = count == 1 ? group : group + Integer.toString(i + 1);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import static org.openhab.binding.shelly.internal.ShellyBindingConstants.*;
+import static org.openhab.binding.shelly.internal.api.ShellyApiJson.*;
+import static org.openhab.binding.shelly.internal.api.ShellyDeviceModel.*;
+import static org.openhab.binding.shelly.internal.api.ShellyHttpApi.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsGlobal;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsRelay;
+
+/**
+ * The {@link ShellyDeviceProfile} holds the device capabilities and the few settings used by the handlers. It is derived from the
+ * /settings document once, the document itself is not retained. The profile is immutable, a settings change creates a new profile.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyDeviceProfile {
+    public final String              thingType;
+    public final String              deviceType;
+
+    public final String              hostname;
+    public final String              mode;
+
+    public final String              hwRev;
+    public final String              hwBatchId;
+    public final String              mac;
+    public final String              fwId;
+    public final String              fwVersion;
+    public final String              fwDate;
+
+    public final Double              maxPower;   // null if not reported by the device
+    public final int                 numMeters;
+    public final int                 numRelays;
+    public final int                 numRollers;
+    public final List<RelayProfile>  relays;
+
+    public final int                 capabilities; // see ShellyDeviceModel.CAP_xxx
+    public final boolean             hasRelays;  // true if it has at least 1 relay
+    public final boolean             hasMeter;   // true if it has at least 1 power meter
+    public final boolean             hasBattery; // true if battery device
+    public final boolean             hasLed;     // true if the device has status/power LEDs
+    public final boolean             isRoller;   // true for Shelly2 in roller mode
+    public final boolean             isPlugS;    // true if it is a Shelly Plug S
+    public final boolean             isLight;    // true if it is a Shelly Bulb/RGBW2
+    public final boolean             isBulb;     // true only if it is a Bulb
+    public final boolean             isSense;    // true if thing is a Shelly Sense
+    public final boolean             inColor;    // true if bulb/rgbw2 is in color mode
+    public final boolean             isSensor;   // true for HT & Smoke
+    public final boolean             isSmoke;    // true for Smoke
+
+    public final Boolean             ledStatusDisable; // Plug S: status LED disabled
+    public final Boolean             ledPowerDisable;  // Plug S: power LED disabled
+    public final String              lightSensor;      // Sense: sensor type
+    public final String              reportUrl;        // HT/Smoke: current sensor report url
+
+    public final Map<String, String> irCodes;    // Sense: list of stored IR codes
+
+    public final boolean             supportsActionUrls; // true if the action urls are supported
+    public final boolean             supportsSensorUrls; // true if sensor url is supported
+
+    // channel group names by index, built once per profile
+    private final String[]           relayGroups;
+    private final String[]           rollerGroups;
+    private final String[]           meterGroups;
+    private final String[]           lightControlGroups;
+    private final String[]           lightWhiteGroups;
+
+    /**
+     * Relay settings used by the handler: the auto on/off timers and the currently registered action urls
+     */
+    public static class RelayProfile {
+        public final Double autoOn;
+        public final Double autoOff;
+        public final String btnOnUrl;
+        public final String btnOffUrl;
+        public final String outOnUrl;
+        public final String outOffUrl;
+
+        RelayProfile(ShellySettingsRelay relay) {
+            autoOn = relay.auto_on;
+            autoOff = relay.auto_off;
+            btnOnUrl = relay.btn_on_url;
+            btnOffUrl = relay.btn_off_url;
+            outOnUrl = relay.out_on_url;
+            outOffUrl = relay.out_off_url;
+        }
+    }
+
+    /**
+     * @param thingType          thing type id
+     * @param settings           the parsed /settings document
+     * @param lightMeters        number of meters reported in the light status (light devices don't include it in the settings)
+     * @param irCodes            Sense: stored IR codes
+     * @param supportsActionUrls true if the firmware supports the relay action urls
+     * @param supportsSensorUrls true if the firmware supports the sensor report url
+     */
+    public ShellyDeviceProfile(String thingType, ShellySettingsGlobal settings, int lightMeters, Map<String, String> irCodes,
+            boolean supportsActionUrls, boolean supportsSensorUrls) {
+        this.thingType = thingType;
+        deviceType = getString(settings.device.type);
+
+        // General settings
+        mac = getString(settings.device.mac);
+        hostname = settings.device.hostname != null && !settings.device.hostname.isEmpty()
+                ? settings.device.hostname.toLowerCase()
+                : "shelly-" + mac.toUpperCase().substring(6, 11);
+        mode = getString(settings.mode).toLowerCase();
+        hwRev = settings.hwinfo != null ? getString(settings.hwinfo.hw_revision) : "";
+        hwBatchId = settings.hwinfo != null ? getString(settings.hwinfo.batch_id.toString()) : "";
+        fwDate = getString(StringUtils.substringBefore(settings.fw, "/"));
+        fwVersion = getString(StringUtils.substringBetween(settings.fw, "/", "@"));
+        fwId = getString(StringUtils.substringAfter(settings.fw, "@"));
+        maxPower = settings.max_power;
+
+        // Shelly1 has a meter, nevertheless numMeters is null!
+        int caps = ShellyDeviceModel.getCapabilities(thingType, mode);
+        boolean light = ShellyDeviceModel.has(caps, CAP_LIGHT);
+        int relayCount = !light && (settings.relays != null) ? getInteger(settings.device.num_outputs) : 0;
+        int meterCount = getInteger(settings.device.num_meters);
+        if ((meterCount == 0) && (relayCount > 0)) {
+            meterCount = 1; // Shelly 1 reports no meters, but has one
+        }
+        if (light && (meterCount == 0)) {
+            meterCount = lightMeters;
+        }
+        numRollers = getInteger(settings.device.num_rollers);
+        numRelays = relayCount;
+        numMeters = meterCount;
+        if (numRelays > 0) {
+            caps |= CAP_RELAYS;
+        }
+        if (numMeters > 0) {
+            caps |= CAP_METER;
+        }
+
+        List<RelayProfile> list = new ArrayList<>();
+        if (settings.relays != null) {
+            for (ShellySettingsRelay relay : settings.relays) {
+                list.add(new RelayProfile(relay));
+            }
+        }
+        relays = Collections.unmodifiableList(list);
+
+        ledStatusDisable = settings.led_status_disable;
+        ledPowerDisable = settings.led_power_disable;
+        lightSensor = settings.light_sensor;
+        reportUrl = settings.report_url;
+
+        this.irCodes = Collections.unmodifiableMap(irCodes);
+        this.supportsActionUrls = supportsActionUrls;
+        this.supportsSensorUrls = supportsSensorUrls;
+
+        capabilities = caps;
+        hasRelays = ShellyDeviceModel.has(caps, CAP_RELAYS);
+        hasMeter = ShellyDeviceModel.has(caps, CAP_METER);
+        hasBattery = ShellyDeviceModel.has(caps, CAP_BATTERY);
+        hasLed = ShellyDeviceModel.has(caps, CAP_LED);
+        isRoller = ShellyDeviceModel.has(caps, CAP_ROLLER);
+        isPlugS = ShellyDeviceModel.has(caps, CAP_PLUGS);
+        isLight = ShellyDeviceModel.has(caps, CAP_LIGHT);
+        isBulb = ShellyDeviceModel.has(caps, CAP_BULB);
+        isSense = ShellyDeviceModel.has(caps, CAP_SENSE);
+        inColor = ShellyDeviceModel.has(caps, CAP_COLOR);
+        isSensor = ShellyDeviceModel.has(caps, CAP_SENSOR);
+        isSmoke = ShellyDeviceModel.has(caps, CAP_SMOKE);
+
+        relayGroups = ShellyDeviceModel.buildGroupNames(CHANNEL_GROUP_RELAY_CONTROL, numRelays);
+        rollerGroups = ShellyDeviceModel.buildGroupNames(CHANNEL_GROUP_ROL_CONTROL, numRollers);
+        meterGroups = ShellyDeviceModel.buildGroupNames(CHANNEL_GROUP_METER, numMeters);
+        lightControlGroups = buildLightGroupNames(isBulb || inColor ? CHANNEL_GROUP_LIGHT_CONTROL : "");
+        lightWhiteGroups = buildLightGroupNames(isBulb && !inColor ? CHANNEL_GROUP_WHITE_CONTROL : "");
+    }
+
+    /**
+     * Copy the profile with a different device mode (e.g. after switching a bulb between color and white mode)
+     */
+    private ShellyDeviceProfile(ShellyDeviceProfile p, String mode) {
+        thingType = p.thingType;
+        deviceType = p.deviceType;
+        hostname = p.hostname;
+        this.mode = mode;
+        hwRev = p.hwRev;
+        hwBatchId = p.hwBatchId;
+        mac = p.mac;
+        fwId = p.fwId;
+        fwVersion = p.fwVersion;
+        fwDate = p.fwDate;
+        maxPower = p.maxPower;
+        numMeters = p.numMeters;
+        numRelays = p.numRelays;
+        numRollers = p.numRollers;
+        relays = p.relays;
+        ledStatusDisable = p.ledStatusDisable;
+        ledPowerDisable = p.ledPowerDisable;
+        lightSensor = p.lightSensor;
+        reportUrl = p.reportUrl;
+        irCodes = p.irCodes;
+        supportsActionUrls = p.supportsActionUrls;
+        supportsSensorUrls = p.supportsSensorUrls;
+
+        // only the mode dependent capabilities change
+        int modeCaps = CAP_ROLLER | CAP_COLOR;
+        int caps = (p.capabilities & ~modeCaps) | (ShellyDeviceModel.getCapabilities(thingType, mode) & modeCaps);
+        capabilities = caps;
+        hasRelays = p.hasRelays;
+        hasMeter = p.hasMeter;
+        hasBattery = p.hasBattery;
+        hasLed = p.hasLed;
+        isRoller = ShellyDeviceModel.has(caps, CAP_ROLLER);
+        isPlugS = p.isPlugS;
+        isLight = p.isLight;
+        isBulb = p.isBulb;
+        isSense = p.isSense;
+        inColor = ShellyDeviceModel.has(caps, CAP_COLOR);
+        isSensor = p.isSensor;
+        isSmoke = p.isSmoke;
+
+        relayGroups = p.relayGroups;
+        rollerGroups = p.rollerGroups;
+        meterGroups = p.meterGroups;
+        lightControlGroups = buildLightGroupNames(isBulb || inColor ? CHANNEL_GROUP_LIGHT_CONTROL : "");
+        lightWhiteGroups = buildLightGroupNames(isBulb && !inColor ? CHANNEL_GROUP_WHITE_CONTROL : "");
+    }
+
+    /**
+     * @param mode new device mode
+     * @return a profile for the given mode
+     */
+    public ShellyDeviceProfile withMode(String mode) {
+        return new ShellyDeviceProfile(this, mode);
+    }
+
+    /**
+     * @param cap capability flags, see ShellyDeviceModel.CAP_xxx
+     * @return true if the device has all of the given capabilities
+     */
+    public boolean has(int cap) {
+        return ShellyDeviceModel.has(capabilities, cap);
+    }
+
+    /**
+     * @param index relay index (0-based)
+     * @return channel group of the relay
+     */
+    public String getRelayGroup(int index) {
+        return getGroup(relayGroups, CHANNEL_GROUP_RELAY_CONTROL, index);
+    }
+
+    /**
+     * @param index roller index (0-based)
+     * @return channel group of the roller
+     */
+    public String getRollerGroup(int index) {
+        return getGroup(rollerGroups, CHANNEL_GROUP_ROL_CONTROL, index);
+    }
+
+    /**
+     * @param index meter index (0-based)
+     * @return channel group of the meter
+     */
+    public String getMeterGroup(int index) {
+        return getGroup(meterGroups, CHANNEL_GROUP_METER, index);
+    }
+
+    /**
+     * @param index light channel (1-based)
+     * @return channel group for the light control
+     */
+    public String getLightControlGroup(int index) {
+        return (index > 0) && (index <= lightControlGroups.length) ? lightControlGroups[index - 1]
+                : CHANNEL_GROUP_LIGHT_CHANNEL + Integer.toString(index);
+    }
+
+    /**
+     * @param index light channel (1-based)
+     * @return channel group for the white control
+     */
+    public String getLightWhiteGroup(int index) {
+        return (index > 0) && (index <= lightWhiteGroups.length) ? lightWhiteGroups[index - 1]
+                : CHANNEL_GROUP_LIGHT_CHANNEL + Integer.toString(index);
+    }
+
+    private static String getGroup(String[] groups, String group, int index) {
+        if (groups.length == 1) {
+            return groups[0]; // single relay/roller/meter, the group has no index
+        }
+        return (index >= 0) && (index < groups.length) ? groups[index] : group + Integer.toString(index + 1);
+    }
+
+    /**
+     * Bulb and RGBW2 in color mode have a single light group, RGBW2 in white mode one group per channel
+     */
+    private static String[] buildLightGroupNames(String group) {
+        String[] names = new String[MAX_LIGHT_CHANNELS];
+        for (int i = 0; i < MAX_LIGHT_CHANNELS; i++) {
+            names[i] = !group.isEmpty() ? group : CHANNEL_GROUP_LIGHT_CHANNEL + Integer.toString(i + 1);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import java.io.IOException;
+
+/**
+ * The {@link ShellyDeviceUnavailableException} is thrown without accessing the network when the circuit breaker of the device is
+ * open, the device didn't respond to the last requests.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyDeviceUnavailableException extends IOException {
+    private static final long serialVersionUID = 4185263781294365820L;
+
+    private final long        retryDelay;
+
+    public ShellyDeviceUnavailableException(String message, long retryDelay) {
+        super(message);
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @return ms until the device gets probed again
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+}
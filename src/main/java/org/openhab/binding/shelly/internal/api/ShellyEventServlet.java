@@ -13,15 +13,20 @@ package org.openhab.binding.shelly.internal.api;
 import static org.openhab.binding.shelly.internal.api.ShellyHttpApi.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.lang.StringUtils;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.binding.shelly.internal.ShellyHandlerFactory;
 import org.osgi.service.component.annotations.Activate;
@@ -44,15 +49,41 @@ import org.slf4j.LoggerFactory;
  */
 @Component(service = HttpServlet.class, configurationPolicy = ConfigurationPolicy.OPTIONAL, immediate = true)
 public class ShellyEventServlet extends HttpServlet {
-    private static final long              serialVersionUID = 549582869577534569L;
-    private final Logger                   logger           = LoggerFactory.getLogger(ShellyEventServlet.class);
+    private static final long              serialVersionUID    = 549582869577534569L;
+    private static final int               EVENT_QUEUE_SIZE    = 256;  // max number of queued events
+    private static final int               EVENT_LATE_MS       = 2000; // event is considered late when processed after x ms
+    private static final int               EVENT_MAX_BODY_SIZE = 4096;
+    private final Logger                   logger              = LoggerFactory.getLogger(ShellyEventServlet.class);
 
     private @Nullable HttpService          httpService;
     private @Nullable ShellyHandlerFactory handlerFactory;
+    private ThreadPoolExecutor             executor;
+    private final AtomicLong               received            = new AtomicLong();
+    private final AtomicLong               dropped             = new AtomicLong();
+    private final AtomicLong               late                = new AtomicLong();
 
     @SuppressWarnings("null")
     @Activate
     protected void activate(Map<String, Object> config) {
+        // a single worker keeps the order of the events, the bounded queue drops the oldest event when the handlers can't keep up
+        executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(EVENT_QUEUE_SIZE),
+                r -> {
+                    Thread thread = new Thread(r, "OH-binding-shelly-events");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (r, e) -> {
+                    if (e.isShutdown()) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                    if (e.getQueue().poll() != null) {
+                        dropped.incrementAndGet();
+                        logger.debug("Event queue full, oldest event dropped ({} dropped so far)", dropped.get());
+                    }
+                    if (!e.getQueue().offer(r)) {
+                        dropped.incrementAndGet();
+                    }
+                });
         try {
             httpService.registerServlet(SHELLY_CALLBACK_URI, this, null, httpService.createDefaultHttpContext());
             logger.info("Shelly: CallbackServlet started at '{}'", SHELLY_CALLBACK_URI);
@@ -65,19 +96,19 @@ public class ShellyEventServlet extends HttpServlet {
     @Deactivate
     protected void deactivate() {
         httpService.unregister(SHELLY_CALLBACK_URI);
-        logger.info("Shelly: CallbackServlet stopped");
+        executor.shutdownNow();
+        logger.info("Shelly: CallbackServlet stopped ({} events received, {} dropped, {} late)", received.get(), dropped.get(),
+                late.get());
     }
 
     /**
-     * Notify servlet handler (will be called by jetty
+     * Callback servlet handler (will be called by jetty). The event is parsed and queued, the request is acknowledged immediately
+     * so the device doesn't wait for the handlers.
      *
-     * Format of SOAP message: <e:propertyset xmlns:e="urn:schemas-upnp-org:event-1-0"> <e:property>
-     * <uniqueDeviceID>1C18548DAF7DE9BC231249DB28D2A650</uniqueDeviceID> </e:property> <e:property> <messageBody>X-pairingCheck:5218C0AA</messageBody>
-     * </e:property> </e:propertyset>
-     *
-     * Format of event message: <?xml version="1.0"?> <e:propertyset xmlns:e="urn:schemas-upnp-org:event-1-0"> <e:property>
-     * <STB_Mac>AC6FBB61B1E5</STB_Mac> </e:property> <e:property> <STB_playContent>{&quot;new_play_mode&quot;:0,&quot;playBackState&quot;:1,&
-     * quot;mediaType&quot;:1,&quot;mediaCode&quot;:&quot;3682&quot;}</ STB_playContent> </e:property> </e:propertyset>
+     * URL looks like
+     * <ip address>:<remote port>/shelly/event/shellyrelay-XXXXXX/relay/n?xxxxx or
+     * <ip address>:<remote port>/shelly/event/shellyrelay-XXXXXX/roller/n?xxxxx or
+     * <ip address>:<remote port>/shelly/event/shellyht-XXXXXX/sensordata?hum=53,temp=26.50
      *
      * @param request
      * @param resp
@@ -88,63 +119,73 @@ public class ShellyEventServlet extends HttpServlet {
     @Override
     protected void service(@Nullable HttpServletRequest request, @Nullable HttpServletResponse resp)
             throws ServletException, IOException {
-        String data = inputStreamToString(request);
         String path = request.getRequestURI().toLowerCase();
-        String deviceName = "";
-        String index = "";
-        String type = "";
-
         try {
-            String ipAddress = request.getHeader("HTTP_X_FORWARDED_FOR");
-            if (ipAddress == null) {
-                ipAddress = request.getRemoteAddr();
-            }
-            Map<String, String[]> parameters = request.getParameterMap();
-            logger.debug("CallbackServlet: {} Request from {}:{}{}?{}", request.getProtocol(), ipAddress, request.getRemotePort(), path,
-                    parameters.toString());
-            if (!path.toLowerCase().startsWith(SHELLY_CALLBACK_URI) || !path.contains("/event/shelly")) {
-                logger.info("ERROR: CallbackServletreceived unknown request- path = {}, data={}", path, data);
+            if (!path.startsWith(SHELLY_CALLBACK_URI + "/shelly")) {
+                logger.info("ERROR: CallbackServlet received unknown request - path = {}", path);
                 return;
             }
 
-            // URL looks like
-            // <ip address>:<remote port>/shelly/event/shellyrelay-XXXXXX/relay/n?xxxxx or
-            // <ip address>:<remote port>/shelly/event/shellyrelay-XXXXXX/roller/n?xxxxx or
-            // <ip address>:<remote port>/shelly/event/shellyht-XXXXXX/sensordata?hum=53,temp=26.50
-            deviceName = StringUtils.substringBetween(path, "/event/", "/").toLowerCase();
-            if (path.contains("/" + EVENT_TYPE_RELAY + "/") || path.contains("/" + EVENT_TYPE_ROLLER + "/")) {
-                index = StringUtils.substringAfterLast(path, "/").toLowerCase();
-                type = StringUtils.substringBetween(path, deviceName + "/", "/" + index);
-            } else {
-                index = "";
-                type = StringUtils.substringAfterLast(path, "/").toLowerCase();
+            int nameStart = SHELLY_CALLBACK_URI.length() + 1;
+            int nameEnd = path.indexOf('/', nameStart);
+            if (nameEnd < 0) {
+                logger.info("ERROR: CallbackServlet received event without type - path = {}", path);
+                return;
+            }
+            String deviceName = path.substring(nameStart, nameEnd);
+            int typeEnd = path.indexOf('/', nameEnd + 1);
+            String type = typeEnd < 0 ? path.substring(nameEnd + 1) : path.substring(nameEnd + 1, typeEnd);
+            String index = typeEnd < 0 ? "" : path.substring(typeEnd + 1);
+
+            // the request object is recycled by Jetty once the response was sent, so copy what is needed
+            Map<String, String[]> parameters = new HashMap<>(request.getParameterMap());
+            String data = request.getContentLength() > 0 ? readBody(request) : "";
+            if (logger.isDebugEnabled()) {
+                logger.debug("CallbackServlet: {} Request from {}:{}{}?{}", request.getProtocol(), request.getRemoteAddr(),
+                        request.getRemotePort(), path, request.getQueryString());
             }
-            logger.trace("Process event of type type={} for device {}, index={}", type, deviceName, index);
-            handlerFactory.onEvent(deviceName, index, type, parameters, data);
 
+            received.incrementAndGet();
+            long receivedTime = System.currentTimeMillis();
+            executor.execute(() -> dispatch(deviceName, index, type, parameters, data, receivedTime));
         } catch (RuntimeException e) {
-            logger.info("ERROR: Exception processing callback: {} ({}), path={}, data='{}'; deviceName={}, index={}, type={}, parameters={}",
-                    e.getMessage(), e.getClass(), path, data, deviceName, index, type, request.getParameterMap().toString());
+            logger.info("ERROR: Exception processing callback: {} ({}), path={}", e.getMessage(), e.getClass(), path);
         } finally {
             setHeaders(resp);
-            resp.getWriter().write("");
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentLength(0);
         }
     }
 
+    private void dispatch(String deviceName, String index, String type, Map<String, String[]> parameters, String data,
+            long receivedTime) {
+        long delay = System.currentTimeMillis() - receivedTime;
+        if (delay > EVENT_LATE_MS) {
+            late.incrementAndGet();
+            logger.debug("Event for device {} processed {}ms after it was received", deviceName, delay);
+        }
+        ShellyHandlerFactory factory = handlerFactory;
+        if (factory == null) {
+            logger.debug("Event for device {} dropped, handler factory not available", deviceName);
+            return;
+        }
+        logger.trace("Process event of type type={} for device {}, index={}", type, deviceName, index);
+        factory.onEvent(deviceName, index, type, parameters, data);
+    }
+
     private void setHeaders(HttpServletResponse response) {
         response.setCharacterEncoding(CHARSET_UTF8);
-        // response.setHeader("Access-Control-Allow-Origin", "*");
-        // response.setHeader("Access-Control-Allow-Methods", "POST");
-        // response.setHeader("Access-Control-Max-Age", "3600");
-        // response.setHeader("Access-Control-Allow-Headers", "Origin, X-Requested-With,
-        // Content-Type, Accept");
     }
 
-    @SuppressWarnings("resource")
-    private String inputStreamToString(@Nullable HttpServletRequest request) throws IOException {
-        @SuppressWarnings("null")
-        Scanner scanner = new Scanner(request.getInputStream()).useDelimiter("\\A");
-        return scanner.hasNext() ? scanner.next() : "";
+    private String readBody(HttpServletRequest request) throws IOException {
+        byte[] buffer = new byte[Math.min(request.getContentLength(), EVENT_MAX_BODY_SIZE)];
+        InputStream input = request.getInputStream();
+        int length = 0;
+        int count;
+        while ((length < buffer.length) && ((count = input.read(buffer, length, buffer.length - length)) > 0)) {
+            length += count;
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
     }
 
     @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
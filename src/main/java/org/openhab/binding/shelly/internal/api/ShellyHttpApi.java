@@ -10,36 +10,56 @@ package org.openhab.binding.shelly.internal.api;
 import static org.openhab.binding.shelly.internal.api.ShellyApiJson.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
-import org.eclipse.smarthome.io.net.http.HttpUtil;
-import org.openhab.binding.shelly.internal.ShellyBindingConstants;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.SellySendKeyList;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyControlRoller;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySenseKeyCode;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsDevice;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsGlobal;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsLight;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsRelay;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsStatus;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusLight;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusRelay;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusSensor;
+import org.openhab.binding.shelly.internal.api.ShellyDeviceProfile.RelayProfile;
+import org.openhab.binding.shelly.internal.api.ShellyProfileCache.ProfileData;
 import org.openhab.binding.shelly.internal.config.ShellyThingConfiguration;
 import org.openhab.binding.shelly.internal.handler.ShellyHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Wrapper for the Shelly http api
@@ -90,12 +110,23 @@ public class ShellyHttpApi {
     public static final String EVENT_TYPE_ROLLER                = "roller";
     public static final String EVENT_TYPE_SENSORDATA            = "sensordata";
     public static final String EVENT_TYPE_LIGHT                 = "light";
+    public static final String EVENT_PARM_TYPE                  = "type";
+    public static final String EVENT_OUT_ON                     = "out_on";
+    public static final String EVENT_OUT_OFF                    = "out_off";
+    public static final String EVENT_PARM_TEMP                  = "temp";
+    public static final String EVENT_PARM_HUM                   = "hum";
+    public static final String EVENT_PARM_LUX                   = "lux";
 
     public static final String SHELLY_IR_CODET_STORED           = "stored";
     public static final String SHELLY_IR_CODET_PRONTO           = "pronto";
     public static final String SHELLY_IR_CODET_PRONTO_HEX       = "pronto_hex";
 
-    public static int          SHELLY_API_TIMEOUT               = 2500;
+    public static final int    SHELLY_API_TIMEOUT               = 2500;  // max request timeout, the timeout adapts to the device rtt
+    public static final int    SHELLY_API_MAX_GATE_WAIT         = 3 * SHELLY_API_TIMEOUT; // max time a request holds the device
+    public static final int    SHELLY_API_MAX_CONN_PER_HOST     = 2;     // Gen1 devices handle only very few parallel connections
+    public static final int    SHELLY_API_MAX_QUEUED_PER_HOST   = 32;
+    public static final int    SHELLY_API_IDLE_TIMEOUT          = 30000; // keep-alive: close idle connections after 30s
+    public static final int    SHELLY_API_MAX_ERROR_SIZE        = 256;   // max number of bytes of an error response included in the log
 
     public static final String OPENHAB_HTTP_PORT                = "OPENHAB_HTTP_PORT";
     public static final String OPENHAB_DEF_PORT                 = "8080";
@@ -109,57 +140,42 @@ public class ShellyHttpApi {
     public static final String CONTENT_TYPE_XML                 = "text/xml; charset=UTF-8";
     public static final String CHARSET_UTF8                     = "utf-8";
 
-    public class ShellyDeviceProfile {
-        public String               thingType;
-
-        public String               settingsJson;
-        public ShellySettingsGlobal settings;
-
-        public String               hostname;
-        public String               mode;
-
-        public String               hwRev;
-        public String               hwBatchId;
-        public String               mac;
-        public String               fwId;
-        public String               fwVersion;
-        public String               fwDate;
-
-        public Double               maxPower;
-        public Integer              numMeters;
-        public Integer              numRelays;
-        public Integer              numRollers;
-
-        public Boolean              hasRelays; // true if it has at least 1 power meter
-        public Boolean              hasMeter; // true if it has at least 1 power meter
-        public Boolean              hasBattery; // true if battery device
-        public Boolean              hasLed; // true if battery device
-        public Boolean              isRoller;  // true for Shelly2 in roller mode
-        public Boolean              isPlugS;  // true if it is a Shelly Plug S
-        public Boolean              isLight; // true if it is a Shelly Bulb/RGBW2
-        public Boolean              isBulb; // true pnly if it is a Bulb
-        public Boolean              isSense; // true if thing is a Shelly Sense
-        public Boolean              inColor; // true if bulb/rgbw2 is in color mode
-        public Boolean              isSensor; // true for HT & Smoke
-        public Boolean              isSmoke; // true for Smoke
-
-        public Map<String, String>  irCodes; // Sense: list of stored IR codes
-
-        public Boolean              supportsActionUrls;  // true if the action urls are supported
-        public Boolean              supportsSensorUrls; // true if sensor url is supported
-
-    }
-
-    private final Logger          logger    = LoggerFactory.getLogger(ShellyHandler.class);
+    private final Logger               logger          = LoggerFactory.getLogger(ShellyHandler.class);
     protected ShellyThingConfiguration config;
-    private String                localPort = OPENHAB_DEF_PORT;
-    public String                 thingName;
+    private String                     localPort       = OPENHAB_DEF_PORT;
+    public String                      thingName;
+
+    private ShellyDeviceProfile        profile;
+    private ProfileData                profileData;     // inputs of the last profile read from the device (for the profile cache)
+    private static final Gson          gson            = new GsonBuilder()
+            .registerTypeAdapterFactory(new ShellyStatusTypeAdapterFactory()).create(); // status documents are stream-parsed
+    private final HttpClient           httpClient;
+    private final String               authHeader;
+    private final ShellyCircuitBreaker breaker         = new ShellyCircuitBreaker(SHELLY_API_TIMEOUT);
+
+    // Gen1 devices process one request at a time: all requests pass a per-device gate, commands have priority over polls
+    private final ReentrantLock        gate            = new ReentrantLock();
+    private final Condition            idle            = gate.newCondition();
+    private boolean                    busy            = false;
+    private boolean                    busyPoll        = false; // the gate is held by the status poll
+    private boolean                    pollPreempted   = false; // a command aborted the status poll
+    private Request                    pollRequest;             // request of the status poll in progress
+    private int                        pendingCommands = 0;
+    private final ThreadLocal<Integer> commandDepth    = ThreadLocal.withInitial(() -> 0);
 
-    private ShellyDeviceProfile   profile;
-    private Gson                  gson      = new Gson();
-
-    public ShellyHttpApi(ShellyThingConfiguration config) {
+    /**
+     * @param config     thing configuration (device ip, userid/password)
+     * @param httpClient shared http client owned by the handler factory (connection pool + keep-alive)
+     */
+    public ShellyHttpApi(ShellyThingConfiguration config, HttpClient httpClient) {
         this.config = config;
+        this.httpClient = httpClient;
+        if (!config.userId.isEmpty()) {
+            String value = config.userId + ":" + config.password;
+            authHeader = HTTP_AUTH_TYPE_BASIC + " " + Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        } else {
+            authHeader = "";
+        }
         Map<String, String> env = System.getenv();
         String portEnv = env.get(OPENHAB_HTTP_PORT);
         localPort = (portEnv != null) ? portEnv : OPENHAB_DEF_PORT;
@@ -167,9 +183,9 @@ public class ShellyHttpApi {
     }
 
     public ShellySettingsDevice getDevInfo() throws IOException {
-        String json = request(SHELLY_URL_DEVINFO);
-        logger.info("Shelly device info : {}", json);
-        return gson.fromJson(json, ShellySettingsDevice.class);
+        ShellySettingsDevice info = request(SHELLY_URL_DEVINFO, ShellySettingsDevice.class);
+        logger.info("Shelly device info: type={}, mac={}, fw={}", info.type, info.mac, info.fw);
+        return info;
     }
 
     public ShellyDeviceProfile getDeviceProfile(String _thingType) throws IOException {
@@ -177,104 +193,165 @@ public class ShellyHttpApi {
         if ((_thingType == null) && (profile != null) && (profile.thingType != null)) {
             thingType = profile.thingType;
         }
-        String json;
-        json = request(SHELLY_URL_SETTINGS);
-        profile = new ShellyDeviceProfile();
-        profile.settingsJson = json;
-        profile.settings = gson.fromJson(json, ShellySettingsGlobal.class);
-
-        // General settings
-        profile.mac = getString(profile.settings.device.mac);
-        profile.hostname = profile.settings.device.hostname != null && !profile.settings.device.hostname.isEmpty()
-                ? profile.settings.device.hostname.toLowerCase()
-                : "shelly-" + profile.mac.toUpperCase().substring(6, 11);
-        thingName = profile.hostname;
-        profile.mode = getString(profile.settings.mode) != null ? getString(profile.settings.mode).toLowerCase() : "";
-        profile.hwRev = profile.settings.hwinfo != null ? getString(profile.settings.hwinfo.hw_revision) : "";
-        profile.hwBatchId = profile.settings.hwinfo != null ? getString(profile.settings.hwinfo.batch_id.toString()) : "";
-        profile.fwDate = getString(StringUtils.substringBefore(profile.settings.fw, "/"));
-        profile.fwVersion = getString(StringUtils.substringBetween(profile.settings.fw, "/", "@"));
-        profile.fwId = getString(StringUtils.substringAfter(profile.settings.fw, "@"));
-
-        // Shelly1 has a meter, nevertheless numMeters is null!
-        profile.thingType = thingType;
-        profile.isRoller = profile.mode.equalsIgnoreCase(SHELLY_MODE_ROLLER);
-        profile.isPlugS = thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYPLUGS.getId());
-        profile.hasLed = profile.isPlugS;
-        profile.isBulb = thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYBULB.getId());
-        profile.isLight = profile.isBulb ||
-                thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYRGBW2_COLOR.getId()) ||
-                thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYRGBW2_WHITE.getId());
-        profile.inColor = profile.isLight && profile.mode.equalsIgnoreCase(SHELLY_MODE_COLOR);
-        profile.isBulb = thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYBULB.getId());
-        profile.isSmoke = thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYSMOKE.getId());
-        profile.isSense = thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYSENSE.getId());
-        profile.isSensor = profile.isSense || thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYHT.getId()) ||
-                thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYSMOKE.getId()) ||
-                thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYSENSE.getId());
-        profile.hasBattery = thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYHT.getId()) ||
-                thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYSMOKE.getId()) ||
-                thingType.equalsIgnoreCase(ShellyBindingConstants.THING_TYPE_SHELLYSENSE.getId());
-        profile.maxPower = profile.settings.max_power != null ? profile.settings.max_power : 0;
-
-        profile.numRollers = getInteger(profile.settings.device.num_rollers);
-        profile.numRelays = !profile.isLight ? getInteger(profile.settings.device.num_outputs) : 0;
-        profile.numMeters = getInteger(profile.settings.device.num_meters);
-        if ((profile.numMeters == 0) && (profile.numRelays > 0)) {
-            profile.numMeters = 1; // Shelly 1 reports no meters, but has one
-        }
-        if (profile.isLight && (profile.numMeters == 0)) {
+        // the settings differ between models and firmware versions, optional features are detected while the document is parsed
+        ShellySettingsGlobal settings = request(SHELLY_URL_SETTINGS, reader -> {
+            SettingsReader json = new SettingsReader(reader);
+            ShellySettingsGlobal s = gson.fromJson(json, ShellySettingsGlobal.class);
+            if (s != null) {
+                s.hasBtnOnUrl = json.btnOnUrl;
+                s.hasReportUrl = json.reportUrl;
+            }
+            return s;
+        }, false);
+        int capabilities = ShellyDeviceModel.getCapabilities(thingType, getString(settings.mode));
+        int lightMeters = 0;
+        if (ShellyDeviceModel.has(capabilities, ShellyDeviceModel.CAP_LIGHT) && (getInteger(settings.device.num_meters) == 0)) {
             logger.debug("Get number of meters from light status");
             ShellyStatusLight status = getLightStatus();
-            profile.numMeters = status.meters != null ? status.meters.size() : 0;
+            lightMeters = status.meters != null ? status.meters.size() : 0;
         }
-        profile.hasMeter = (profile.numMeters > 0);
-        if ((profile.numRelays > 0) && (profile.settings.relays == null)) {
-            profile.numRelays = 0;
+        Map<String, String> irCodes = ShellyDeviceModel.has(capabilities, ShellyDeviceModel.CAP_SENSE) ? getIRCodeList()
+                : new HashMap<String, String>();
+
+        profileData = new ProfileData(thingType, getString(settings.mode).toLowerCase(), settings, lightMeters, irCodes,
+                settings.hasBtnOnUrl, settings.hasReportUrl);
+        profile = profileData.toProfile();
+        thingName = profile.hostname;
+        return profile;
+    }
+
+    /**
+     * The {@link SettingsReader} records the optional event url attributes while the settings are bound, their presence indicates
+     * the supported events.
+     */
+    private static class SettingsReader extends JsonReader {
+        boolean btnOnUrl  = false;
+        boolean reportUrl = false;
+
+        SettingsReader(Reader in) {
+            super(in);
         }
-        profile.hasRelays = profile.numRelays > 0;
 
-        profile.irCodes = profile.isSense ? getIRCodeList() : new HashMap<String, String>();
+        @Override
+        public String nextName() throws IOException {
+            String name = super.nextName();
+            if (name.equals(SHELLY_API_EVENTURL_BTN_ON)) {
+                btnOnUrl = true;
+            } else if (name.equals(SHELLY_API_EVENTURL_REPORT)) {
+                reportUrl = true;
+            }
+            return name;
+        }
+    }
 
-        profile.supportsActionUrls = profile.settingsJson.contains(SHELLY_API_EVENTURL_BTN_ON);
-        profile.supportsSensorUrls = profile.settingsJson.contains(SHELLY_API_EVENTURL_REPORT);
-        return profile;
+    /**
+     * Parser for a response document
+     */
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+        T parse(Reader reader) throws IOException;
+    }
+
+    /**
+     * @return the data of the last profile read by getDeviceProfile(), null if the profile was not read from the device yet
+     */
+    public ProfileData getProfileData() {
+        return profileData;
     }
 
+    /**
+     * Use a known profile (e.g. loaded from the profile cache) without requesting the settings from the device
+     */
+    public void setDeviceProfile(ShellyDeviceProfile profile) {
+        this.profile = profile;
+        thingName = profile.hostname;
+    }
+
+    /**
+     * Reconcile the event urls of the device: the urls of the profile are compared with the required urls, only urls which differ are
+     * written. All urls of a relay are written with a single request.
+     *
+     * @param deviceName device name used in the callback url
+     */
     public void setEventURLs(String deviceName) throws IOException {
+        int writes = 0;
+        int skipped = 0;
         if (profile.supportsActionUrls) {
             // set event URLs for Shelly2/4 Pro
             logger.trace("Check/set Action event URLs for Relay or Roller for device {}", thingName);
             int i = 0;
-            for (ShellySettingsRelay relay : profile.settings.relays) {
-                logger.info("Current settings for relay[{}]: btn_on_url={}/btn_off_url={}, out_on_url={}, out_off_url={}", i,
-                        relay.btn_on_url, relay.btn_off_url, relay.out_on_url, relay.out_off_url);
-                setRelayEventUrls(i, deviceName);
+            for (RelayProfile relay : profile.relays) {
+                logger.debug("Current settings for relay[{}]: btn_on_url={}/btn_off_url={}, out_on_url={}, out_off_url={}", i,
+                        relay.btnOnUrl, relay.btnOffUrl, relay.outOnUrl, relay.outOffUrl);
+                Map<String, String> changes = getRelayEventUrlChanges(i, relay, deviceName);
+                int required = (config.eventsRelayButton ? 2 : 0) + (config.eventsRelaySwitch ? 2 : 0);
+                skipped += required - changes.size();
+                if (!changes.isEmpty()) {
+                    setRelayEventUrls(i, changes);
+                    writes++;
+                }
                 i++;
             }
         }
-        setSensorEventUrls(deviceName);
+        if (profile.supportsSensorUrls && config.eventsSensorReport) {
+            if (setSensorEventUrls(deviceName)) {
+                writes++;
+            } else {
+                skipped++;
+            }
+        }
+        logger.debug("Event urls for device {} reconciled: {} write(s), {} url(s) already up to date", thingName, writes, skipped);
     }
 
-    public ShellySettingsStatus gerStatus() throws IOException {
-        String result = request(SHELLY_URL_STATUS);
-        ShellySettingsStatus status = gson.fromJson(result, ShellySettingsStatus.class);
-        status.json = result;
+    /**
+     * Get the /status document. The result includes relay, roller, meter, light and sensor data so it serves all status views of a
+     * single poll cycle.
+     *
+     * @return the device status
+     */
+    public ShellySettingsStatus getStatus() throws IOException {
+        return getStatus(false);
+    }
+
+    /**
+     * Get the /status document for the poll cycle. The poll gives way to commands: it's skipped while a command is pending and an
+     * active poll gets aborted when a command arrives.
+     *
+     * @return the device status
+     * @throws ShellyPollSkippedException the poll was skipped or aborted in favor of a command
+     */
+    public ShellySettingsStatus pollStatus() throws IOException {
+        return getStatus(true);
+    }
+
+    private ShellySettingsStatus getStatus(boolean poll) throws IOException {
+        ShellySettingsStatus status = request(SHELLY_URL_STATUS, reader -> gson.fromJson(reader, ShellySettingsStatus.class), poll);
+        if ((profile != null) && profile.isSense && (status.tmp != null)) {
+            // complete reported data
+            status.tmp.tC = getString(status.tmp.units).equals(SHELLY_TEMP_CELSIUS) ? status.tmp.value : 0;
+            status.tmp.tF = getString(status.tmp.units).equals(SHELLY_TEMP_FAHRENHEIT) ? status.tmp.value : 0;
+        }
         return status;
     }
 
+    /**
+     * Get the status of a single relay. The poll cycle takes the relay status from {@link #getStatus()}, this call is used for a
+     * targeted confirmation only.
+     */
     public ShellyStatusRelay getRelayStatus(Integer relayIndex) throws IOException {
-        String result = request(SHELLY_URL_STATUS_RELEAY + "/" + relayIndex.toString());
-        return gson.fromJson(result, ShellyStatusRelay.class);
+        return request(SHELLY_URL_STATUS_RELEAY + "/" + relayIndex.toString(), ShellyStatusRelay.class);
     }
 
     public void setRelayTurn(Integer relayIndex, String turnMode) throws IOException {
         request(SHELLY_URL_CONTROL_RELEAY + "/" + relayIndex.toString() + "?turn=" + turnMode.toLowerCase());
     }
 
+    /**
+     * Get the status of a single roller, e.g. to verify the roller state before sending a command. The poll cycle takes the roller
+     * status from {@link #getStatus()}.
+     */
     public ShellyControlRoller getRollerStatus(Integer rollerIndex) throws IOException {
-        String result = request(SHELLY_URL_CONTROL_ROLLER + "/" + rollerIndex.toString() + "/pos");
-        return gson.fromJson(result, ShellyControlRoller.class);
+        return request(SHELLY_URL_CONTROL_ROLLER + "/" + rollerIndex.toString() + "/pos", ShellyControlRoller.class);
     }
 
     public void setRollerTurn(Integer relayIndex, String turnMode) throws IOException {
@@ -289,38 +366,64 @@ public class ShellyHttpApi {
         request(SHELLY_URL_CONTROL_ROLLER + "/" + relayIndex.toString() + "?timer=" + timer.toString());
     }
 
-    public void setRelayEventUrls(Integer relayIndex, String deviceName) throws IOException {
+    /**
+     * Compare the current action urls of a relay with the required ones
+     *
+     * @return parameter name and url of each action url which needs to be written
+     */
+    private Map<String, String> getRelayEventUrlChanges(Integer relayIndex, RelayProfile relay, String deviceName) {
         String eventUrl = "http://" + config.localIp + ":" + localPort + SHELLY_CALLBACK_URI + "/" + deviceName + "/relay/"
                 + relayIndex.toString();
+        Map<String, String> changes = new LinkedHashMap<>();
         if (config.eventsRelayButton) {
-            request(buildEventUrl(relayIndex, SHELLY_API_EVENTURL_BTN_ON, eventUrl));
-            request(buildEventUrl(relayIndex, SHELLY_API_EVENTURL_BTN_OFF, eventUrl));
+            addEventUrlChange(changes, SHELLY_API_EVENTURL_BTN_ON, relay.btnOnUrl, eventUrl);
+            addEventUrlChange(changes, SHELLY_API_EVENTURL_BTN_OFF, relay.btnOffUrl, eventUrl);
         }
         if (config.eventsRelaySwitch) {
-            request(buildEventUrl(relayIndex, SHELLY_API_EVENTURL_SW_ON, eventUrl));
-            request(buildEventUrl(relayIndex, SHELLY_API_EVENTURL_SW_OFF, eventUrl));
+            addEventUrlChange(changes, SHELLY_API_EVENTURL_SW_ON, relay.outOnUrl, eventUrl);
+            addEventUrlChange(changes, SHELLY_API_EVENTURL_SW_OFF, relay.outOffUrl, eventUrl);
         }
+        return changes;
     }
 
-    public ShellyStatusSensor getSensorStatus() throws IOException {
-        ShellyStatusSensor status = gson.fromJson(request(SHELLY_URL_STATUS), ShellyStatusSensor.class);
-        if (profile.isSense) {
-            // complete reported data
-            status.tmp.tC = status.tmp.units.equals(SHELLY_TEMP_CELSIUS) ? status.tmp.value : 0;
-            status.tmp.tF = status.tmp.units.equals(SHELLY_TEMP_FAHRENHEIT) ? status.tmp.value : 0;
+    private static void addEventUrlChange(Map<String, String> changes, String parameter, String currentUrl, String eventUrl) {
+        String url = eventUrl + "?type=" + StringUtils.substringBefore(parameter, "_url");
+        if (!url.equals(currentUrl)) {
+            changes.put(parameter, url);
         }
-        return status;
     }
 
-    public void setSensorEventUrls(String deviceName) throws IOException {
-        if (profile.supportsSensorUrls && config.eventsSensorReport) {
-            // set event URL for HT (report_url)
-            logger.trace("Check/set Sensor Reporting URL");
+    /**
+     * Write the action urls of a relay with a single request
+     *
+     * @param relayIndex relay index (0-based)
+     * @param urls       parameter name and url of the action urls to write
+     */
+    private void setRelayEventUrls(Integer relayIndex, Map<String, String> urls) throws IOException {
+        StringBuilder uri = new StringBuilder(SHELLY_URL_SETTINGS_RELAY + "/" + relayIndex.toString());
+        char separator = '?';
+        for (Map.Entry<String, String> url : urls.entrySet()) {
+            uri.append(separator).append(url.getKey()).append('=').append(urlEncode(url.getValue()));
+            separator = '&';
+        }
+        logger.debug("Set event urls {} for relay[{}] of device {}", urls.keySet(), relayIndex, thingName);
+        request(uri.toString());
+    }
 
-            String eventUrl = "http://" + config.localIp + ":" + localPort + SHELLY_CALLBACK_URI + "/" + deviceName + "/" + EVENT_TYPE_SENSORDATA;
-            String setUrl = MessageFormat.format(SHELLY_URL_SETTINGSSENSOR_SETURL, SHELLY_API_EVENTURL_REPORT, urlEncode(eventUrl));
-            request(setUrl);
+    /**
+     * Set the sensor report url (HT, Smoke) if it differs from the current one
+     *
+     * @return true if the url was written
+     */
+    private boolean setSensorEventUrls(String deviceName) throws IOException {
+        String eventUrl = "http://" + config.localIp + ":" + localPort + SHELLY_CALLBACK_URI + "/" + deviceName + "/" + EVENT_TYPE_SENSORDATA;
+        if (eventUrl.equals(profile.reportUrl)) {
+            return false;
         }
+        logger.trace("Set Sensor Reporting URL for device {}", thingName);
+        String setUrl = MessageFormat.format(SHELLY_URL_SETTINGSSENSOR_SETURL, SHELLY_API_EVENTURL_REPORT, urlEncode(eventUrl));
+        request(setUrl);
+        return true;
     }
 
     public void setTimer(Integer index, String timerName, Double value) throws IOException {
@@ -339,13 +442,11 @@ public class ShellyHttpApi {
     }
 
     public ShellySettingsLight getLightSettings() throws IOException {
-        String result = request(SHELLY_URL_SETTINGS_LIGHT);
-        return gson.fromJson(result, ShellySettingsLight.class);
+        return request(SHELLY_URL_SETTINGS_LIGHT, ShellySettingsLight.class);
     }
 
     public ShellyStatusLight getLightStatus() throws IOException {
-        String result = request(SHELLY_URL_STATUS);
-        return gson.fromJson(result, ShellyStatusLight.class);
+        return request(SHELLY_URL_STATUS, ShellyStatusLight.class);
     }
 
     public void setLightSetting(String parm, String value) throws IOException {
@@ -355,8 +456,7 @@ public class ShellyHttpApi {
     public void setLightMode(String mode) throws IOException {
         if (!mode.isEmpty() && !profile.mode.equals(mode)) {
             setLightSetting(SHELLY_API_MODE, mode);
-            profile.mode = mode;
-            profile.inColor = profile.isLight && profile.mode.equalsIgnoreCase(SHELLY_MODE_COLOR);
+            profile = profile.withMode(mode);
         }
     }
 
@@ -423,45 +523,309 @@ public class ShellyHttpApi {
     }
 
     /**
-     * Submit GET request and return response, check for invalid responses
+     * Submit GET request and return response, check for invalid responses. The request is executed on the shared http client, which
+     * re-uses keep-alive connections to the device. Used for commands, which return a short response.
      *
      * @param uri: URI (e.g. "/settings")
      */
     public String request(String uri) throws IOException {
-        String httpResponse = "ERROR";
         String url = "http://" + config.deviceIp + uri;
-        // boolean acquired = false;
+        acquire(url, false);
+        try {
+            checkCircuit();
+            logger.trace("HTTP GET for {}: {}", thingName, url);
+            long start = System.currentTimeMillis();
+            ContentResponse response = newRequest(url).send();
+            breaker.onSuccess(System.currentTimeMillis() - start);
+            String httpResponse = response.getContentAsString();
+            if (!HttpStatus.isSuccess(response.getStatus())) {
+                throw httpError(url, response.getStatus(), httpResponse);
+            }
+            logger.trace("HTTP response from {}: {}", thingName, httpResponse);
+            return httpResponse;
+        } catch (ExecutionException | TimeoutException e) {
+            breaker.onFailure();
+            throw new IOException("Shelly API call failed on url=" + url + ": " + e.getMessage() + " - " + e.getClass());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Shelly API call interrupted on url=" + url);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Submit GET request and decode the JSON response. The body is streamed from the network buffers directly into the JSON decoder,
+     * the response is never materialized as String. Errors are detected by the http status.
+     *
+     * @param uri      URI (e.g. "/status")
+     * @param classOfT class of the result
+     * @return decoded response
+     */
+    public <T> T request(String uri, Class<T> classOfT) throws IOException {
+        return request(uri, reader -> gson.fromJson(reader, classOfT), false);
+    }
+
+    private <T> T request(String uri, ResponseParser<T> parser, boolean poll) throws IOException {
+        String url = "http://" + config.deviceIp + uri;
+        acquire(url, poll);
         try {
+            checkCircuit();
             logger.trace("HTTP GET for {}: {}", thingName, url);
+            InputStreamResponseListener listener = new InputStreamResponseListener();
+            long start = System.currentTimeMillis();
+            // the round trip time is sampled on the headers, so the adaptive timeout applies only until the headers arrive. Streaming
+            // the body (e.g. large /settings on a slow WiFi) gets the configured timeout on top.
+            int headerTimeout = breaker.getTimeout();
+            Request request = newRequest(url, headerTimeout + SHELLY_API_TIMEOUT);
+            if (poll) {
+                startPoll(request);
+            }
+            request.send(listener);
+            Response response;
+            try {
+                response = listener.get(headerTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                request.abort(e);
+                throw e;
+            }
+            breaker.onSuccess(System.currentTimeMillis() - start);
+            try (InputStream input = listener.getInputStream()) {
+                if (!HttpStatus.isSuccess(response.getStatus())) {
+                    throw httpError(url, response.getStatus(), readError(input));
+                }
+                Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+                if (logger.isTraceEnabled()) {
+                    // diagnostics: capture the raw document only when trace logging is enabled
+                    JsonElement tree = new JsonParser().parse(reader);
+                    logger.trace("HTTP response from {}: {}", thingName, tree);
+                    reader = new StringReader(tree.toString());
+                }
+                T result = parser.parse(reader);
+                if (result == null) {
+                    throw new IOException("Empty response");
+                }
+                return result;
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            checkPreempted(poll);
+            breaker.onFailure();
+            throw new IOException("Shelly API call failed on url=" + url + ": " + e.getMessage() + " - " + e.getClass());
+        } catch (JsonParseException e) {
+            checkPreempted(poll);
+            throw new IOException("Shelly API call failed on url=" + url + ": " + e.getMessage() + " - " + e.getClass());
+        } catch (IOException e) {
+            checkPreempted(poll); // reading the body fails when the request was aborted
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Shelly API call interrupted on url=" + url);
+        } finally {
+            release();
+        }
+    }
 
-            Properties headers = new Properties();
-            if (!config.userId.isEmpty()) {
-                String value = config.userId + ":" + config.password;
-                headers.put(HTTP_HEADER_AUTH, HTTP_AUTH_TYPE_BASIC + " " + Base64.getEncoder().encodeToString(value.getBytes()));
+    private Request newRequest(String url) {
+        return newRequest(url, breaker.getTimeout());
+    }
+
+    private Request newRequest(String url, int timeoutMs) {
+        Request request = httpClient.newRequest(url).method(HttpMethod.GET).timeout(timeoutMs, TimeUnit.MILLISECONDS);
+        if (!authHeader.isEmpty()) {
+            request.header(HttpHeader.AUTHORIZATION, authHeader);
+        }
+        return request;
+    }
+
+    /**
+     * Check the circuit breaker before a request is sent. An open circuit rejects the request without network access. Once the retry
+     * time is reached a cheap probe (/shelly doesn't require authentication) decides if the device is back.
+     *
+     * @throws ShellyDeviceUnavailableException the device is not responding
+     */
+    private void checkCircuit() throws IOException {
+        switch (breaker.check()) {
+            case CLOSED:
+                return;
+            case HALF_OPEN:
+                String url = "http://" + config.deviceIp + SHELLY_URL_DEVINFO;
+                logger.debug("Probing device {}", thingName);
+                try {
+                    long start = System.currentTimeMillis();
+                    httpClient.newRequest(url).method(HttpMethod.GET).timeout(SHELLY_API_TIMEOUT, TimeUnit.MILLISECONDS).send();
+                    breaker.onSuccess(System.currentTimeMillis() - start);
+                    logger.info("Device {} is responding again", thingName);
+                    return;
+                } catch (ExecutionException | TimeoutException e) {
+                    breaker.onFailure();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    breaker.onFailure();
+                }
+                break;
+            default:
+                break;
+        }
+        long retryDelay = breaker.getRetryDelay();
+        throw new ShellyDeviceUnavailableException(
+                "Device " + thingName + " is not responding, next retry in " + (retryDelay / 1000) + "sec", retryDelay);
+    }
+
+    /**
+     * @return ms until the next retry of a device which is not responding, 0 if the device is responding
+     */
+    public long getRetryDelay() {
+        return breaker.getRetryDelay();
+    }
+
+    private IOException httpError(String url, int status, String body) {
+        if (status == HttpStatus.UNAUTHORIZED_401) {
+            return new IOException(
+                    "401 Unauthorized: Access denied for device " + thingName + ", set/correct userid and password in the thing config");
+        }
+        return new IOException("ERROR from " + thingName + ": Unexpected http response (" + status + "): " + body + ", url=" + url);
+    }
+
+    private static String readError(InputStream input) throws IOException {
+        byte[] buffer = new byte[SHELLY_API_MAX_ERROR_SIZE];
+        int length = 0;
+        int count;
+        while ((length < buffer.length) && ((count = input.read(buffer, length, buffer.length - length)) > 0)) {
+            length += count;
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Mark the calling thread as command lane: all requests until {@link #endCommand()} get priority over status requests. Polls are
+     * dropped while a command is pending. Calls can be nested.
+     */
+    public void beginCommand() {
+        int depth = commandDepth.get();
+        commandDepth.set(depth + 1);
+        if (depth == 0) {
+            gate.lock();
+            try {
+                pendingCommands++;
+                preemptPoll();
+            } finally {
+                gate.unlock();
             }
+        }
+    }
+
+    public void endCommand() {
+        int depth = commandDepth.get();
+        if (depth == 0) {
+            return;
+        }
+        if (depth > 1) {
+            commandDepth.set(depth - 1);
+            return;
+        }
+        commandDepth.remove();
+        gate.lock();
+        try {
+            pendingCommands--;
+            idle.signalAll();
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Wait until the device is free. Commands are queued ahead of other requests, the status poll is dropped once a command is
+     * pending and a poll in progress gets aborted.
+     *
+     * @param url  request url (for logging)
+     * @param poll true: request of the status poll
+     * @throws ShellyPollSkippedException poll was dropped in favor of a command
+     * @throws IOException                timeout waiting for the device
+     */
+    private void acquire(String url, boolean poll) throws IOException {
+        boolean command = commandDepth.get() > 0;
+        gate.lock();
+        try {
+            // a request holds the gate for the header timeout, the body timeout and a circuit breaker probe at most
+            long remaining = TimeUnit.MILLISECONDS.toNanos(SHELLY_API_MAX_GATE_WAIT);
+            while (true) {
+                if (poll && !command && (pendingCommands > 0)) {
+                    throw new ShellyPollSkippedException("Status request for " + thingName + " skipped, command pending");
+                }
+                if (!busy) {
+                    busy = true;
+                    busyPoll = poll;
+                    pollPreempted = false;
+                    return;
+                }
+                if (command) {
+                    preemptPoll();
+                }
+                if (remaining <= 0) {
+                    throw new IOException("Shelly API call failed on url=" + url + ": Timeout waiting for the device to become idle");
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Shelly API call interrupted on url=" + url);
+        } finally {
+            gate.unlock();
+        }
+    }
 
-            httpResponse = HttpUtil.executeUrl(HTTP_GET, url, headers, null, "", SHELLY_API_TIMEOUT);
-            Validate.notNull(httpResponse, "httpResponse must not be null");
-            // all api responses are returning the result in Json format. If we are getting something else it must
-            // be an error message, e.g. http result code
-            if (httpResponse.contains("401 Unauthorized")) {
-                throw new IOException("Access denied for device " + thingName + ", set/correct userid and password in the thing config");
+    /**
+     * Abort the status poll in progress, the command doesn't have to wait for a slow poll. Must be called with the gate locked.
+     */
+    private void preemptPoll() {
+        if (busy && busyPoll && !pollPreempted) {
+            pollPreempted = true;
+            if (pollRequest != null) {
+                logger.trace("{}: Abort status request in favor of a command", thingName);
+                pollRequest.abort(new ShellyPollSkippedException("Status request for " + thingName + " aborted, command pending"));
             }
-            if (!httpResponse.startsWith("{") && !httpResponse.startsWith("[")) {
-                throw new IOException("ERROR from " + thingName + ": Unexpected http resonse: " + httpResponse + ", url=" + url);
+        }
+    }
+
+    private void startPoll(Request request) throws ShellyPollSkippedException {
+        gate.lock();
+        try {
+            if (pollPreempted) {
+                throw new ShellyPollSkippedException("Status request for " + thingName + " skipped, command pending");
             }
+            pollRequest = request;
+        } finally {
+            gate.unlock();
+        }
+    }
 
-            logger.trace("HTTP response from {}: {}", thingName, httpResponse);
-            return httpResponse;
-        } catch (IOException e) {
-            throw new IOException(
-                    "Shelly API call failed on url=" + url + ", response=" + httpResponse + ": " + e.getMessage() + " - " + e.getClass());
+    /**
+     * A failed status poll which was aborted by a command is reported as skipped, it doesn't count as device failure
+     */
+    private void checkPreempted(boolean poll) throws ShellyPollSkippedException {
+        if (!poll) {
+            return;
+        }
+        gate.lock();
+        try {
+            if (pollPreempted) {
+                throw new ShellyPollSkippedException("Status request for " + thingName + " aborted, command pending");
+            }
+        } finally {
+            gate.unlock();
         }
     }
 
-    private String buildEventUrl(Integer relayIndex, String parameter, String url) throws IOException {
-        return MessageFormat.format(SHELLY_URL_SETTINGS_RELAY_SETURL, relayIndex.toString(), parameter,
-                urlEncode(url + "?type=" + StringUtils.substringBefore(parameter, "_url")));
+    private void release() {
+        gate.lock();
+        try {
+            busy = false;
+            busyPoll = false;
+            pollRequest = null;
+            idle.signalAll();
+        } finally {
+            gate.unlock();
+        }
     }
 
     private String urlEncode(String input) throws IOException {
@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import java.io.IOException;
+
+/**
+ * The {@link ShellyPollSkippedException} is thrown when a status request was dropped, because a command for the same device is
+ * pending. The device is fine, the status will be updated on the next poll.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyPollSkippedException extends IOException {
+    private static final long serialVersionUID = -3512489340816391517L;
+
+    public ShellyPollSkippedException(String message) {
+        super(message);
+    }
+}
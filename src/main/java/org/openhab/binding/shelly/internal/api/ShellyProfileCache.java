@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsGlobal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * The {@link ShellyProfileCache} persists the last known device profile of each thing in the userdata folder. After a restart the
+ * thing goes online with the cached profile, the profile is revalidated in the background. The cache stores the device settings the
+ * profile was built from, the profile itself is re-created by its constructor when loaded.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyProfileCache {
+    public static final String CACHE_FOLDER  = "shelly";
+    private static final int   CACHE_VERSION = 2;  // increment when the profile format changes, older entries are ignored
+
+    private final Logger       logger        = LoggerFactory.getLogger(ShellyProfileCache.class);
+    private static final Gson  gson          = new Gson();
+    private final File         folder;
+
+    private static class CacheEntry {
+        int         version;
+        ProfileData data;
+    }
+
+    /**
+     * The inputs of a {@link ShellyDeviceProfile}: the /settings document plus the values which are collected from other requests
+     */
+    public static class ProfileData {
+        private final String               thingType;
+        private final String               mode;
+        private final ShellySettingsGlobal settings;
+        private final int                  lightMeters;
+        private final Map<String, String>  irCodes;
+        private final boolean              supportsActionUrls;
+        private final boolean              supportsSensorUrls;
+
+        public ProfileData(String thingType, String mode, ShellySettingsGlobal settings, int lightMeters, Map<String, String> irCodes,
+                boolean supportsActionUrls, boolean supportsSensorUrls) {
+            this.thingType = thingType;
+            this.mode = mode;
+            this.settings = settings;
+            this.lightMeters = lightMeters;
+            this.irCodes = new HashMap<>(irCodes);
+            this.supportsActionUrls = supportsActionUrls;
+            this.supportsSensorUrls = supportsSensorUrls;
+        }
+
+        /**
+         * @return a new profile, the constructor derives all capabilities from the settings
+         */
+        public ShellyDeviceProfile toProfile() {
+            ShellyDeviceProfile profile = new ShellyDeviceProfile(thingType, settings, lightMeters,
+                    irCodes != null ? irCodes : new HashMap<String, String>(), supportsActionUrls, supportsSensorUrls);
+            return (mode != null) && !mode.equals(profile.mode) ? profile.withMode(mode) : profile;
+        }
+    }
+
+    /**
+     * @param userDataFolder openHAB userdata folder, the profiles are stored in the sub folder "shelly"
+     */
+    public ShellyProfileCache(String userDataFolder) {
+        folder = new File(userDataFolder, CACHE_FOLDER);
+    }
+
+    /**
+     * Load the cached profile of a thing
+     *
+     * @param thingUID thing UID
+     * @return the profile or null if no valid profile is available
+     */
+    public ShellyDeviceProfile load(String thingUID) {
+        File file = getFile(thingUID);
+        if (!file.exists()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            CacheEntry entry = gson.fromJson(reader, CacheEntry.class);
+            if ((entry == null) || (entry.version != CACHE_VERSION) || (entry.data == null) || (entry.data.settings == null)
+                    || (entry.data.settings.device == null)) {
+                logger.debug("Cached profile for {} is outdated, ignored", thingUID);
+                return null;
+            }
+            return entry.data.toProfile();
+        } catch (IOException | RuntimeException e) {
+            // JsonParseException or an incomplete settings document rejected by the profile
+            logger.debug("Unable to load cached profile for {}: {} ({})", thingUID, e.getMessage(), e.getClass());
+            return null;
+        }
+    }
+
+    /**
+     * Save the profile of a thing. The file is replaced atomically, a crash doesn't leave a partial profile.
+     *
+     * @param thingUID thing UID
+     * @param data     the data the device profile was built from
+     */
+    public void store(String thingUID, ProfileData data) {
+        if (data == null) {
+            return;
+        }
+        CacheEntry entry = new CacheEntry();
+        entry.version = CACHE_VERSION;
+        entry.data = data;
+        File file = getFile(thingUID);
+        File temp = new File(folder, file.getName() + ".tmp");
+        try {
+            Files.createDirectories(folder.toPath());
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.trace("Profile for {} saved to {}", thingUID, file);
+        } catch (IOException e) {
+            logger.debug("Unable to save profile for {}: {} ({})", thingUID, e.getMessage(), e.getClass());
+        }
+    }
+
+    /**
+     * Remove the cached profile, e.g. when the thing gets removed
+     *
+     * @param thingUID thing UID
+     */
+    public void remove(String thingUID) {
+        try {
+            Files.deleteIfExists(getFile(thingUID).toPath());
+        } catch (IOException e) {
+            logger.debug("Unable to remove profile for {}: {} ({})", thingUID, e.getMessage(), e.getClass());
+        }
+    }
+
+    private File getFile(String thingUID) {
+        return new File(folder, thingUID.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+    }
+}
@@ -0,0 +1,697 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyControlRoller;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsMeter;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsStatus;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsUpdate;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsWiFiNetwork;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyShortStatusRelay;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusCloud;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusLight;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusLightChannel;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusMqtt;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusRelay;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusSensor;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The {@link ShellyStatusTypeAdapterFactory} provides streaming adapters for the status documents, which are parsed on every poll.
+ * The fields are read directly from the {@link JsonReader}, unknown fields are skipped without building a tree and no reflection is
+ * involved. Writing is delegated to the default Gson adapters.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyStatusTypeAdapterFactory implements TypeAdapterFactory {
+
+    private interface Reader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType == ShellySettingsStatus.class) {
+            return (TypeAdapter<T>) adapter(gson, this, ShellySettingsStatus.class, ShellyStatusTypeAdapterFactory::readStatus);
+        }
+        if (rawType == ShellyStatusRelay.class) {
+            return (TypeAdapter<T>) adapter(gson, this, ShellyStatusRelay.class, ShellyStatusTypeAdapterFactory::readRelayStatus);
+        }
+        if (rawType == ShellyStatusLight.class) {
+            return (TypeAdapter<T>) adapter(gson, this, ShellyStatusLight.class, ShellyStatusTypeAdapterFactory::readLightStatus);
+        }
+        if (rawType == ShellyStatusSensor.class) {
+            return (TypeAdapter<T>) adapter(gson, this, ShellyStatusSensor.class, ShellyStatusTypeAdapterFactory::readSensorStatus);
+        }
+        if (rawType == ShellyControlRoller.class) {
+            return (TypeAdapter<T>) adapter(gson, this, ShellyControlRoller.class, ShellyStatusTypeAdapterFactory::readRoller);
+        }
+        return null;
+    }
+
+    private static <T> TypeAdapter<T> adapter(Gson gson, TypeAdapterFactory skipPast, Class<T> clazz, Reader<T> reader) {
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(skipPast, TypeToken.get(clazz));
+        return new TypeAdapter<T>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                return reader.read(in);
+            }
+        };
+    }
+
+    public static ShellySettingsStatus readStatus(JsonReader in) throws IOException {
+        ShellySettingsStatus status = new ShellySettingsStatus();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "wifi_sta":
+                    status.wifi_sta = readObject(in, ShellyStatusTypeAdapterFactory::readWiFi);
+                    break;
+                case "time":
+                    status.time = readString(in);
+                    break;
+                case "serial":
+                    status.serial = readInteger(in);
+                    break;
+                case "has_update":
+                    status.has_update = readBoolean(in);
+                    break;
+                case "mac":
+                    status.mac = readString(in);
+                    break;
+                case "relays":
+                    status.relays = readList(in, ShellyStatusTypeAdapterFactory::readShortRelay);
+                    break;
+                case "rollers":
+                    status.rollers = readList(in, ShellyStatusTypeAdapterFactory::readRoller);
+                    break;
+                case "lights":
+                    status.lights = readList(in, ShellyStatusTypeAdapterFactory::readLightChannel);
+                    break;
+                case "meters":
+                    status.meters = readList(in, ShellyStatusTypeAdapterFactory::readMeter);
+                    break;
+                case "update":
+                    status.update = readObject(in, ShellyStatusTypeAdapterFactory::readUpdate);
+                    break;
+                case "ram_total":
+                    status.ram_total = readLong(in);
+                    break;
+                case "ram_free":
+                    status.ram_free = readLong(in);
+                    break;
+                case "fs_size":
+                    status.fs_size = readLong(in);
+                    break;
+                case "fs_free":
+                    status.fs_free = readLong(in);
+                    break;
+                case "uptime":
+                    status.uptime = readLong(in);
+                    break;
+                case "tmp":
+                    status.tmp = readObject(in, ShellyStatusTypeAdapterFactory::readTemp);
+                    break;
+                case "hum":
+                    status.hum = readObject(in, ShellyStatusTypeAdapterFactory::readHum);
+                    break;
+                case "lux":
+                    status.lux = readObject(in, ShellyStatusTypeAdapterFactory::readLux);
+                    break;
+                case "bat":
+                    status.bat = readObject(in, ShellyStatusTypeAdapterFactory::readBat);
+                    break;
+                case "motion":
+                    status.motion = readBoolean(in);
+                    break;
+                case "charger":
+                    status.charger = readBoolean(in);
+                    break;
+                case "act_reasons":
+                    status.act_reasons = readStringArray(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return status;
+    }
+
+    public static ShellyStatusRelay readRelayStatus(JsonReader in) throws IOException {
+        ShellyStatusRelay status = new ShellyStatusRelay();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "wifi_sta":
+                    status.wifi_sta = readObject(in, ShellyStatusTypeAdapterFactory::readWiFi);
+                    break;
+                case "cloud":
+                    status.cloud = readObject(in, ShellyStatusTypeAdapterFactory::readCloud);
+                    break;
+                case "mqtt":
+                    status.mqtt = readObject(in, ShellyStatusTypeAdapterFactory::readMqtt);
+                    break;
+                case "time":
+                    status.time = readString(in);
+                    break;
+                case "serial":
+                    status.serial = readInteger(in);
+                    break;
+                case "mac":
+                    status.mac = readString(in);
+                    break;
+                case "relays":
+                    status.relays = readList(in, ShellyStatusTypeAdapterFactory::readShortRelay);
+                    break;
+                case "meters":
+                    status.meters = readList(in, ShellyStatusTypeAdapterFactory::readMeter);
+                    break;
+                case "has_update":
+                    status.has_update = readBoolean(in);
+                    break;
+                case "update":
+                    status.update = readObject(in, ShellyStatusTypeAdapterFactory::readUpdate);
+                    break;
+                case "ram_total":
+                    status.ram_total = readInteger(in);
+                    break;
+                case "ram_free":
+                    status.ram_free = readInteger(in);
+                    break;
+                case "fs_size":
+                    status.fs_size = readInteger(in);
+                    break;
+                case "fs_free":
+                    status.fs_free = readInteger(in);
+                    break;
+                case "uptime":
+                    status.uptime = readInteger(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return status;
+    }
+
+    public static ShellyStatusLight readLightStatus(JsonReader in) throws IOException {
+        ShellyStatusLight status = new ShellyStatusLight();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "ison":
+                    status.ison = readBoolean(in);
+                    break;
+                case "lights":
+                    status.lights = readList(in, ShellyStatusTypeAdapterFactory::readLightChannel);
+                    break;
+                case "meters":
+                    status.meters = readList(in, ShellyStatusTypeAdapterFactory::readMeter);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return status;
+    }
+
+    public static ShellyStatusSensor readSensorStatus(JsonReader in) throws IOException {
+        ShellyStatusSensor status = new ShellyStatusSensor();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "tmp":
+                    status.tmp = readObject(in, ShellyStatusTypeAdapterFactory::readTemp);
+                    break;
+                case "hum":
+                    status.hum = readObject(in, ShellyStatusTypeAdapterFactory::readHum);
+                    break;
+                case "lux":
+                    status.lux = readObject(in, ShellyStatusTypeAdapterFactory::readLux);
+                    break;
+                case "bat":
+                    status.bat = readObject(in, ShellyStatusTypeAdapterFactory::readBat);
+                    break;
+                case "motion":
+                    status.motion = readBoolean(in);
+                    break;
+                case "charger":
+                    status.charger = readBoolean(in);
+                    break;
+                case "act_reasons":
+                    status.act_reasons = readStringArray(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return status;
+    }
+
+    public static ShellyControlRoller readRoller(JsonReader in) throws IOException {
+        ShellyControlRoller roller = new ShellyControlRoller();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "roller_pos":
+                    roller.roller_pos = readInteger(in);
+                    break;
+                case "duration":
+                    roller.duration = readInteger(in);
+                    break;
+                case "state":
+                    roller.state = readString(in);
+                    break;
+                case "power":
+                    roller.power = readDouble(in);
+                    break;
+                case "is_valid":
+                    roller.is_valid = readBoolean(in);
+                    break;
+                case "safety_switch":
+                    roller.safety_switch = readBoolean(in);
+                    break;
+                case "overtemperature":
+                    roller.overtemperature = readBoolean(in);
+                    break;
+                case "stop_reason":
+                    roller.stop_reason = readString(in);
+                    break;
+                case "last_direction":
+                    roller.last_direction = readString(in);
+                    break;
+                case "calibrating":
+                    roller.calibrating = readBoolean(in);
+                    break;
+                case "positioning":
+                    roller.positioning = readBoolean(in);
+                    break;
+                case "current_pos":
+                    roller.current_pos = readInteger(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return roller;
+    }
+
+    private static ShellyShortStatusRelay readShortRelay(JsonReader in) throws IOException {
+        ShellyShortStatusRelay relay = new ShellyShortStatusRelay();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "is_valid":
+                    relay.is_valid = readBoolean(in);
+                    break;
+                case "has_timer":
+                    relay.has_timer = readBoolean(in);
+                    break;
+                case "overpower":
+                    relay.overpower = readBoolean(in);
+                    break;
+                case "ison":
+                    relay.ison = readBoolean(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return relay;
+    }
+
+    private static ShellyStatusLightChannel readLightChannel(JsonReader in) throws IOException {
+        ShellyStatusLightChannel light = new ShellyStatusLightChannel();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "ison":
+                    light.ison = readBoolean(in);
+                    break;
+                case "power":
+                    light.power = readDouble(in);
+                    break;
+                case "overpower":
+                    light.overpower = readBoolean(in);
+                    break;
+                case "auto_on":
+                    light.auto_on = readDouble(in);
+                    break;
+                case "auto_off":
+                    light.auto_off = readDouble(in);
+                    break;
+                case "red":
+                    light.red = readInteger(in);
+                    break;
+                case "green":
+                    light.green = readInteger(in);
+                    break;
+                case "blue":
+                    light.blue = readInteger(in);
+                    break;
+                case "white":
+                    light.white = readInteger(in);
+                    break;
+                case "gain":
+                    light.gain = readInteger(in);
+                    break;
+                case "temp":
+                    light.temp = readInteger(in);
+                    break;
+                case "brightness":
+                    light.brightness = readInteger(in);
+                    break;
+                case "effect":
+                    light.effect = readInteger(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return light;
+    }
+
+    private static ShellySettingsMeter readMeter(JsonReader in) throws IOException {
+        ShellySettingsMeter meter = new ShellySettingsMeter();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "is_valid":
+                    meter.is_valid = readBoolean(in);
+                    break;
+                case "power":
+                    meter.power = readDouble(in);
+                    break;
+                case "counters":
+                    meter.counters = readDoubleArray(in);
+                    break;
+                case "total":
+                    meter.total = readDouble(in);
+                    break;
+                case "timestamp":
+                    meter.timestamp = readLong(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return meter;
+    }
+
+    private static ShellySettingsUpdate readUpdate(JsonReader in) throws IOException {
+        ShellySettingsUpdate update = new ShellySettingsUpdate();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "status":
+                    update.status = readString(in);
+                    break;
+                case "has_update":
+                    update.has_update = readBoolean(in);
+                    break;
+                case "new_version":
+                    update.new_version = readString(in);
+                    break;
+                case "old_version":
+                    update.old_version = readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return update;
+    }
+
+    private static ShellySettingsWiFiNetwork readWiFi(JsonReader in) throws IOException {
+        ShellySettingsWiFiNetwork wifi = new ShellySettingsWiFiNetwork();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "enabled":
+                    wifi.enabled = readBoolean(in);
+                    break;
+                case "ssid":
+                    wifi.ssid = readString(in);
+                    break;
+                case "rssi":
+                    wifi.rssi = readInteger(in);
+                    break;
+                case "ip":
+                    wifi.ip = readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return wifi;
+    }
+
+    private static ShellyStatusCloud readCloud(JsonReader in) throws IOException {
+        ShellyStatusCloud cloud = new ShellyStatusCloud();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "enabled":
+                    cloud.enabled = readBoolean(in);
+                    break;
+                case "connected":
+                    cloud.connected = readBoolean(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return cloud;
+    }
+
+    private static ShellyStatusMqtt readMqtt(JsonReader in) throws IOException {
+        ShellyStatusMqtt mqtt = new ShellyStatusMqtt();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("connected")) {
+                mqtt.connected = readBoolean(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return mqtt;
+    }
+
+    private static ShellyStatusSensor._tmp readTemp(JsonReader in) throws IOException {
+        ShellyStatusSensor._tmp tmp = new ShellyStatusSensor._tmp();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "value":
+                    tmp.value = readDouble(in);
+                    break;
+                case "units":
+                    tmp.units = readString(in);
+                    break;
+                case "tC":
+                    tmp.tC = readDouble(in);
+                    break;
+                case "tF":
+                    tmp.tF = readDouble(in);
+                    break;
+                case "is_valid":
+                    tmp.is_valid = readBoolean(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return tmp;
+    }
+
+    private static ShellyStatusSensor._hum readHum(JsonReader in) throws IOException {
+        ShellyStatusSensor._hum hum = new ShellyStatusSensor._hum();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("value")) {
+                hum.value = readDouble(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return hum;
+    }
+
+    private static ShellyStatusSensor._lux readLux(JsonReader in) throws IOException {
+        ShellyStatusSensor._lux lux = new ShellyStatusSensor._lux();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "is_valid":
+                    lux.is_valid = readBoolean(in);
+                    break;
+                case "value":
+                    lux.value = readDouble(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return lux;
+    }
+
+    private static ShellyStatusSensor._bat readBat(JsonReader in) throws IOException {
+        ShellyStatusSensor._bat bat = new ShellyStatusSensor._bat();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "value":
+                    bat.value = readDouble(in);
+                    break;
+                case "voltage":
+                    bat.voltage = readDouble(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return bat;
+    }
+
+    private static <T> T readObject(JsonReader in, Reader<T> reader) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        return reader.read(in);
+    }
+
+    private static <T> ArrayList<T> readList(JsonReader in, Reader<T> reader) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        ArrayList<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readObject(in, reader));
+        }
+        in.endArray();
+        return list;
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static Boolean readBoolean(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case BOOLEAN:
+                return in.nextBoolean();
+            case STRING:
+                return Boolean.valueOf(in.nextString());
+            default:
+                in.skipValue();
+                return null;
+        }
+    }
+
+    private static Integer readInteger(JsonReader in) throws IOException {
+        if (!isNumber(in)) {
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static Long readLong(JsonReader in) throws IOException {
+        if (!isNumber(in)) {
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    private static Double readDouble(JsonReader in) throws IOException {
+        if (!isNumber(in)) {
+            return null;
+        }
+        return in.nextDouble();
+    }
+
+    private static boolean isNumber(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if ((token == JsonToken.NUMBER) || (token == JsonToken.STRING)) {
+            return true;
+        }
+        in.skipValue();
+        return false;
+    }
+
+    private static Double[] readDoubleArray(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        ArrayList<Double> values = new ArrayList<>(3);
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readDouble(in));
+        }
+        in.endArray();
+        return values.toArray(new Double[values.size()]);
+    }
+
+    private static String[] readStringArray(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        ArrayList<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readString(in));
+        }
+        in.endArray();
+        return values.toArray(new String[values.size()]);
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.coap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@link ShellyCoIoTDecoder} decodes the CoAP header and options of a CoIoT packet. The decoder works directly on the receive
+ * buffer and only records offsets, strings are created on demand. An instance is not thread-safe and can be reused for the next packet.
+ *
+ * CoIoT uses the following vendor specific options:
+ * 3332: global device id "<type>#<mac>#<coiot version>"
+ * 3412: validity of the status in sec
+ * 3420: serial, which changes once the device status changes
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyCoIoTDecoder {
+    public static final int  COAP_VERSION          = 1;
+    public static final int  COAP_CODE_CONTENT     = 0x45; // 2.05 Content (response to /cit/d)
+    public static final int  COIOT_CODE_STATUS     = 30;   // non-standard code used for the /cit/s status multicast
+
+    public static final int  COIOT_OPTION_GLOBALID = 3332;
+    public static final int  COIOT_OPTION_VALIDITY = 3412;
+    public static final int  COIOT_OPTION_SERIAL   = 3420;
+
+    private static final int COAP_PAYLOAD_MARKER   = 0xff;
+
+    private ByteBuffer       buffer;
+    private int              code;
+    private int              messageId;
+    private int              devIdOffset;
+    private int              devIdLength;
+    private int              validity;
+    private int              serial;
+    private int              payloadOffset;
+    private int              payloadLength;
+
+    /**
+     * Decode the packet between position and limit of the buffer. The buffer position is not changed.
+     *
+     * @param packet receive buffer (flipped)
+     * @return true if the packet is a valid CoAP message including a CoIoT device id
+     */
+    public boolean decode(ByteBuffer packet) {
+        buffer = packet;
+        code = messageId = validity = 0;
+        serial = devIdOffset = devIdLength = payloadOffset = payloadLength = -1;
+
+        int pos = packet.position();
+        int limit = packet.limit();
+        if (limit - pos < 4) {
+            return false;
+        }
+        int b = packet.get(pos) & 0xff;
+        int tokenLength = b & 0x0f;
+        if (((b >> 6) != COAP_VERSION) || (tokenLength > 8)) {
+            return false;
+        }
+        code = packet.get(pos + 1) & 0xff;
+        messageId = ((packet.get(pos + 2) & 0xff) << 8) | (packet.get(pos + 3) & 0xff);
+        pos += 4 + tokenLength;
+
+        int option = 0;
+        while (pos < limit) {
+            b = packet.get(pos++) & 0xff;
+            if (b == COAP_PAYLOAD_MARKER) {
+                payloadOffset = pos;
+                payloadLength = limit - pos;
+                break;
+            }
+
+            // option delta and length: 0-12 inline, 13: +1 byte, 14: +2 bytes, 15: reserved
+            int delta = b >> 4;
+            int length = b & 0x0f;
+            if ((delta == 15) || (length == 15)) {
+                return false;
+            }
+            int extension = (delta == 13 ? 1 : delta == 14 ? 2 : 0) + (length == 13 ? 1 : length == 14 ? 2 : 0);
+            if (pos + extension > limit) {
+                return false; // truncated packet
+            }
+            if (delta == 13) {
+                delta = (packet.get(pos++) & 0xff) + 13;
+            } else if (delta == 14) {
+                delta = (((packet.get(pos) & 0xff) << 8) | (packet.get(pos + 1) & 0xff)) + 269;
+                pos += 2;
+            }
+            if (length == 13) {
+                length = (packet.get(pos++) & 0xff) + 13;
+            } else if (length == 14) {
+                length = (((packet.get(pos) & 0xff) << 8) | (packet.get(pos + 1) & 0xff)) + 269;
+                pos += 2;
+            }
+            if (length > limit - pos) {
+                return false; // truncated packet
+            }
+
+            option += delta;
+            switch (option) {
+                case COIOT_OPTION_GLOBALID:
+                    devIdOffset = pos;
+                    devIdLength = length;
+                    break;
+                case COIOT_OPTION_VALIDITY:
+                    validity = getUnsigned(pos, length);
+                    break;
+                case COIOT_OPTION_SERIAL:
+                    serial = getUnsigned(pos, length);
+                    break;
+                default:
+                    break;
+            }
+            pos += length;
+        }
+        return devIdLength > 0;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isStatus() {
+        return code == COIOT_CODE_STATUS;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return the global device id, e.g. "SHSW-1#A4CF12F3CB3D#1"
+     */
+    public String getDeviceId() {
+        return getString(devIdOffset, devIdLength);
+    }
+
+    /**
+     * @return device type, e.g. "SHSW-1"
+     */
+    public String getDeviceType() {
+        int sep = indexOf('#', devIdOffset, devIdOffset + devIdLength);
+        return sep >= 0 ? getString(devIdOffset, sep - devIdOffset) : getDeviceId();
+    }
+
+    /**
+     * @return the device mac address, e.g. "A4CF12F3CB3D" or "" if not included in the device id
+     */
+    public String getDeviceMac() {
+        int end = devIdOffset + devIdLength;
+        int start = indexOf('#', devIdOffset, end) + 1;
+        if (start == 0) {
+            return "";
+        }
+        int sep = indexOf('#', start, end);
+        return getString(start, (sep >= 0 ? sep : end) - start);
+    }
+
+    public int getValidity() {
+        return validity;
+    }
+
+    /**
+     * @return the status serial, -1 if not included
+     */
+    public int getSerial() {
+        return serial;
+    }
+
+    /**
+     * @return the JSON payload or "" if the packet has none
+     */
+    public String getPayload() {
+        return payloadLength > 0 ? getString(payloadOffset, payloadLength) : "";
+    }
+
+    private int getUnsigned(int pos, int length) {
+        int value = 0;
+        for (int i = 0; i < Math.min(length, 4); i++) {
+            value = (value << 8) | (buffer.get(pos + i) & 0xff);
+        }
+        return value;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String getString(int offset, int length) {
+        if ((offset < 0) || (length <= 0)) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
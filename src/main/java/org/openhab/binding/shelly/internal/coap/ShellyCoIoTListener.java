@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.coap;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Enumeration;
+
+import org.openhab.binding.shelly.internal.ShellyHandlerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ShellyCoIoTListener} receives the CoIoT status multicasts of the Shelly devices. The packets are decoded in the receive
+ * buffer and dispatched to the thing handlers, which fetch the new status once the serial of the device has changed.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyCoIoTListener {
+    public static final String         COIOT_MULTICAST_GROUP = "224.0.1.187";
+    public static final int            COIOT_PORT            = 5683;
+    private static final int           COIOT_MAX_PACKET_SIZE = 2048;
+
+    private final Logger               logger                = LoggerFactory.getLogger(ShellyCoIoTListener.class);
+    private final ShellyHandlerFactory handlerFactory;
+    private final int                  port;
+    private final ByteBuffer           buffer                = ByteBuffer.allocateDirect(COIOT_MAX_PACKET_SIZE);
+    private final ShellyCoIoTDecoder   decoder               = new ShellyCoIoTDecoder();
+
+    private DatagramChannel            channel;
+    private Selector                   selector;
+    private Thread                     thread;
+    private volatile boolean           running               = false;
+    private long                       received              = 0;
+    private long                       invalid               = 0;
+
+    /**
+     * @param handlerFactory receives the decoded device updates
+     * @param port           UDP port to listen on (CoIoT default is 5683)
+     */
+    public ShellyCoIoTListener(ShellyHandlerFactory handlerFactory, int port) {
+        this.handlerFactory = handlerFactory;
+        this.port = port;
+    }
+
+    /**
+     * Open the channel, join the CoIoT multicast group and start the receiver thread
+     *
+     * @throws IOException unable to open/bind the UDP port
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        joinGroup(InetAddress.getByName(COIOT_MULTICAST_GROUP));
+
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        running = true;
+        thread = new Thread(this::run, "OH-binding-shelly-coiot");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("CoIoT listener started on port {}", port);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        try {
+            if (selector != null) {
+                selector.wakeup();
+                selector.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to close CoIoT listener: {} ({})", e.getMessage(), e.getClass());
+        } finally {
+            selector = null;
+            channel = null;
+            thread = null;
+        }
+        logger.debug("CoIoT listener stopped ({} packets received, {} invalid)", received, invalid);
+    }
+
+    private void joinGroup(InetAddress group) throws IOException {
+        int joined = 0;
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while ((interfaces != null) && interfaces.hasMoreElements()) {
+            NetworkInterface nif = interfaces.nextElement();
+            try {
+                if (nif.isUp() && nif.supportsMulticast() && !nif.isLoopback()) {
+                    channel.join(group, nif);
+                    joined++;
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.debug("Unable to join CoIoT multicast group on interface {}: {}", nif.getName(), e.getMessage());
+            }
+        }
+        if (joined == 0) {
+            logger.info("Unable to join CoIoT multicast group {} on any interface, only unicast updates will be received", group);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (selector.select() == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+
+                // drain all packets available on the channel
+                SocketAddress sender;
+                while ((sender = receive()) != null) {
+                    process(sender);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    logger.debug("CoIoT receive failed: {} ({})", e.getMessage(), e.getClass());
+                }
+            }
+        }
+    }
+
+    private SocketAddress receive() throws IOException {
+        buffer.clear();
+        SocketAddress sender = channel.receive(buffer);
+        buffer.flip();
+        return sender;
+    }
+
+    private void process(SocketAddress sender) {
+        received++;
+        if (!decoder.decode(buffer)) {
+            invalid++;
+            logger.trace("Invalid CoIoT packet from {} ignored ({} bytes)", sender, buffer.remaining());
+            return;
+        }
+        if (!decoder.isStatus()) {
+            return;
+        }
+
+        String mac = decoder.getDeviceMac();
+        if (logger.isTraceEnabled()) {
+            logger.trace("CoIoT status from {}: device id={}, serial={}, validity={}, payload={}", sender, decoder.getDeviceId(),
+                    decoder.getSerial(), decoder.getValidity(), decoder.getPayload());
+        }
+        if (!mac.isEmpty()) {
+            handlerFactory.onCoIoTUpdate(decoder.getDeviceType(), mac, decoder.getSerial());
+        }
+    }
+}
@@ -7,6 +7,7 @@
  */
 package org.openhab.binding.shelly.internal.config;
 
+import java.math.BigDecimal;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Map;
@@ -20,14 +21,18 @@ import org.apache.commons.lang.Validate;
  */
 public class ShellyBindingConfiguration {
     // Binding Configuration Properties
-    public static final String CONFIG_DEF_HTTP_USER = "defaultUserId";
-    public static final String CONFIG_DEF_HTTP_PWD  = "defaultPassword";
-    public static final String CONFIG_COAP_PORT     = "coapPort";
+    public static final String CONFIG_DEF_HTTP_USER        = "defaultUserId";
+    public static final String CONFIG_DEF_HTTP_PWD         = "defaultPassword";
+    public static final String CONFIG_COAP_PORT            = "coapPort";
+    public static final String CONFIG_STARTUP_WINDOW       = "startupWindow";
+    public static final String CONFIG_STARTUP_MAX_PARALLEL = "startupMaxParallel";
 
-    public String              defaultUserId        = "";      // default for http basic user id
-    public String              defaultPassword      = "";      // default for http basic auth password
+    public String              defaultUserId               = "";      // default for http basic user id
+    public String              defaultPassword             = "";      // default for http basic auth password
 
-    public int                 coapPort             = 5684;   // default Coap port
+    public int                 coapPort                    = 5683;   // CoIoT multicast port, 0=disabled
+    public int                 startupWindow               = 30;     // initialization of things is spread over x sec after startup
+    public int                 startupMaxParallel          = 4;      // max number of things initializing at the same time
 
     public void updateFromProperties(Map<String, Object> properties) {
         Validate.notNull(properties);
@@ -45,11 +50,19 @@ public class ShellyBindingConfiguration {
         if (!value.isEmpty()) {
             coapPort = Integer.parseInt(value);
         }
+        value = getProperty(properties, CONFIG_STARTUP_WINDOW);
+        if (!value.isEmpty()) {
+            startupWindow = new BigDecimal(value).intValue();
+        }
+        value = getProperty(properties, CONFIG_STARTUP_MAX_PARALLEL);
+        if (!value.isEmpty()) {
+            startupMaxParallel = new BigDecimal(value).intValue();
+        }
     }
 
     private String getProperty(Dictionary<String, Object> properties, String key) {
-        String s = (String) properties.get(key);
-        return s != null ? s : "";
+        Object value = properties.get(key);
+        return value != null ? value.toString() : "";
     }
 
 }
@@ -26,4 +26,9 @@ public class ShellyThingConfiguration {
     public boolean eventsRelayButton  = false;  // true: register for Relay btn_xxx events
     public boolean eventsRelaySwitch  = true;   // true: register for de vice out_xxx events
     public boolean eventsSensorReport = true;   // true: register for sensor events
+
+    public float   meterDeadbandAbs   = 0;      // publish power readings only if they changed by more than x W
+    public float   meterDeadbandRel   = 0;      // or by more than x % of the last published value
+    public float   meterDeadbandTotal = 0;      // publish the total consumption only if it changed by more than x kWh
+    public int     meterMaxSilence    = 0;      // publish meter readings at least every x sec
 }
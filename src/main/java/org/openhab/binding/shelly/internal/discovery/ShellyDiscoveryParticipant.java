@@ -27,8 +27,8 @@ import org.eclipse.smarthome.config.discovery.mdns.MDNSDiscoveryParticipant;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.ThingUID;
 import org.openhab.binding.shelly.internal.ShellyHandlerFactory;
+import org.openhab.binding.shelly.internal.api.ShellyDeviceProfile;
 import org.openhab.binding.shelly.internal.api.ShellyHttpApi;
-import org.openhab.binding.shelly.internal.api.ShellyHttpApi.ShellyDeviceProfile;
 import org.openhab.binding.shelly.internal.config.ShellyBindingConfiguration;
 import org.openhab.binding.shelly.internal.config.ShellyThingConfiguration;
 import org.osgi.service.component.ComponentContext;
@@ -97,17 +97,19 @@ public class ShellyDiscoveryParticipant implements MDNSDiscoveryParticipant {
         }
 
         logger.info("Shelly device discovered: IP-Adress={}, name={}", address, name);
+        if ((handlerFactory == null) || (handlerFactory.getHttpClient() == null)) {
+            logger.info("Shelly HandlerFactory not yet available, device {} will be added on the next announcement", name);
+            return null;
+        }
         try {
             ShellyThingConfiguration config = new ShellyThingConfiguration();
-            if (handlerFactory != null) {
-                bindingConfig = handlerFactory.getBindingConfig();
-            }
+            bindingConfig = handlerFactory.getBindingConfig();
             config.deviceIp = address;
             config.userId = bindingConfig.defaultUserId;
             config.password = bindingConfig.defaultPassword;
 
             // Get device settings
-            ShellyHttpApi api = new ShellyHttpApi(config);
+            ShellyHttpApi api = new ShellyHttpApi(config, handlerFactory.getHttpClient());
             String thingType = StringUtils.substringBeforeLast(name, "-");
             Map<String, Object> properties = new HashMap<>(5);
             properties.put(PROPERTY_VENDOR, "Shelly");
@@ -129,7 +131,6 @@ public class ShellyDiscoveryParticipant implements MDNSDiscoveryParticipant {
             }
             Validate.notNull(profile, "Unable to get device profile: ");
 
-            logger.debug("Shelly settings : {}", profile.settingsJson);
             logger.trace("name={}, thingType={}, mode={}", name, profile.thingType, profile.mode.isEmpty() ? "n/a" : profile.mode);
             properties.put(PROPERTY_MODEL_ID, profile.thingType);
             properties.put(PROPERTY_MAC_ADDRESS, profile.mac);
@@ -138,11 +139,11 @@ public class ShellyDiscoveryParticipant implements MDNSDiscoveryParticipant {
             addProperty(properties, PROPERTY_HWBATCH, profile.hwBatchId);
             addProperty(properties, PROPERTY_MODE, profile.mode);
             addProperty(properties, PROPERTY_HOSTNAME, profile.hostname);
-            addProperty(properties, PROPERTY_NUM_RELAYS, profile.numRelays.toString());
-            addProperty(properties, PROPERTY_NUM_ROLLERS, profile.numRollers.toString());
-            addProperty(properties, PROPERTY_NUM_METER, profile.numMeters.toString());
-            if (profile.settings.light_sensor != null) {
-                addProperty(properties, PROPERTY_LIGHT_SENSOR, profile.settings.light_sensor);
+            addProperty(properties, PROPERTY_NUM_RELAYS, Integer.toString(profile.numRelays));
+            addProperty(properties, PROPERTY_NUM_ROLLERS, Integer.toString(profile.numRollers));
+            addProperty(properties, PROPERTY_NUM_METER, Integer.toString(profile.numMeters));
+            if (profile.lightSensor != null) {
+                addProperty(properties, PROPERTY_LIGHT_SENSOR, profile.lightSensor);
 
             }
 
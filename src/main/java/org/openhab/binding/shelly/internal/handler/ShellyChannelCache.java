@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import static org.openhab.binding.shelly.internal.ShellyBindingConstants.CHANNEL_GROUP_SEPARATOR;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link ShellyChannelCache} keeps the last published state of each channel, so that only real changes are posted to the event
+ * bus. The cache is thread-safe, poll, event and command threads may update channels at the same time.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyChannelCache {
+    private final Map<String, State>               states     = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> channelIds = new ConcurrentHashMap<>();
+    private final AtomicLong                       published  = new AtomicLong();
+    private final AtomicLong                       suppressed = new AtomicLong();
+
+    /**
+     * Get the channel id for group/channel. The ids are built once and re-used on every update.
+     *
+     * @param group   channel group
+     * @param channel channel name within the group
+     * @return channel id (group#channel)
+     */
+    public String getChannelId(String group, String channel) {
+        return channelIds.computeIfAbsent(group, g -> new ConcurrentHashMap<>()).computeIfAbsent(channel,
+                c -> group + CHANNEL_GROUP_SEPARATOR + c);
+    }
+
+    /**
+     * Store the new state of a channel
+     *
+     * @param channelId channel id
+     * @param state     new state
+     * @return true if the state has changed and needs to be published
+     */
+    public boolean update(String channelId, State state) {
+        State previous = states.put(channelId, state);
+        if (state.equals(previous)) {
+            suppressed.incrementAndGet();
+            return false;
+        }
+        published.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Store the new state of a channel, which gets published even if it's unchanged
+     *
+     * @param channelId channel id
+     * @param state     new state
+     */
+    public void put(String channelId, State state) {
+        states.put(channelId, state);
+        published.incrementAndGet();
+    }
+
+    /**
+     * @return the last state of the channel or null if the channel was not updated yet
+     */
+    public State get(String channelId) {
+        return states.get(channelId);
+    }
+
+    /**
+     * Forget the state of a channel, the next update will be published
+     *
+     * @param channelId channel id
+     */
+    public void invalidate(String channelId) {
+        states.remove(channelId);
+    }
+
+    /**
+     * Forget all states, the next update of each channel will be published
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * Convert a value from the device API into a channel state
+     *
+     * @param value value (String, Integer, Long, Double, Boolean or a State)
+     * @return the state or null if the type is not supported
+     */
+    public static State toState(Object value) {
+        if (value instanceof State) {
+            return (State) value;
+        }
+        if (value instanceof String) {
+            return new StringType((String) value);
+        }
+        if (value instanceof Integer) {
+            return new DecimalType((Integer) value);
+        }
+        if (value instanceof Long) {
+            return new DecimalType((Long) value);
+        }
+        if (value instanceof Double) {
+            return new DecimalType((Double) value);
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? OnOffType.ON : OnOffType.OFF;
+        }
+        return null;
+    }
+}
@@ -30,6 +30,8 @@ public class ShellyColorUtils {
     }
 
     public ShellyColorUtils(ShellyColorUtils col) {
+        power = col.power;
+        mode = col.mode;
         setRed(col.red);
         setGreen(col.green);
         setBlue(col.blue);
@@ -37,6 +39,7 @@ public class ShellyColorUtils {
         setGain(col.gain);
         setBrightness(col.brightness);
         setTemp(col.temp);
+        setEffect(col.effect);
     }
 
     OnOffType   power        = OnOffType.OFF;
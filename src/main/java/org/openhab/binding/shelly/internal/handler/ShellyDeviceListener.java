@@ -20,4 +20,13 @@ public interface ShellyDeviceListener {
      * This method is called when new device information is received.
      */
     public void onEvent(String deviceName, String deviceIndex, String eventType, Map<String, String[]> parameters, String data);
+
+    /**
+     * This method is called when a CoIoT status update was received.
+     *
+     * @param deviceType device type from the CoIoT device id, e.g. SHSW-1
+     * @param mac        mac address of the device
+     * @param serial     status serial, changes with every change of the device status
+     */
+    public void onCoIoTUpdate(String deviceType, String mac, int serial);
 }
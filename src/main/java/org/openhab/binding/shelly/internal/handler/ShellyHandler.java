@@ -12,20 +12,16 @@ import static org.openhab.binding.shelly.internal.api.ShellyApiJson.*;
 import static org.openhab.binding.shelly.internal.api.ShellyHttpApi.*;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.eclipse.smarthome.core.library.types.DecimalType;
-import org.eclipse.smarthome.core.library.types.HSBType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.PercentType;
 import org.eclipse.smarthome.core.library.types.StopMoveType;
-import org.eclipse.smarthome.core.library.types.StringType;
 import org.eclipse.smarthome.core.library.types.UpDownType;
 import org.eclipse.smarthome.core.net.NetworkAddressService;
 import org.eclipse.smarthome.core.thing.ChannelUID;
@@ -35,17 +31,17 @@ import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
+import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.shelly.internal.ShellyHandlerFactory;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyControlRoller;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsMeter;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsRelay;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsRoller;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsStatus;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyShortStatusRelay;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusRelay;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusSensor;
+import org.openhab.binding.shelly.internal.api.ShellyDeviceProfile;
+import org.openhab.binding.shelly.internal.api.ShellyDeviceProfile.RelayProfile;
+import org.openhab.binding.shelly.internal.api.ShellyDeviceUnavailableException;
 import org.openhab.binding.shelly.internal.api.ShellyHttpApi;
-import org.openhab.binding.shelly.internal.api.ShellyHttpApi.ShellyDeviceProfile;
+import org.openhab.binding.shelly.internal.api.ShellyPollSkippedException;
 import org.openhab.binding.shelly.internal.config.ShellyBindingConfiguration;
 import org.openhab.binding.shelly.internal.config.ShellyThingConfiguration;
 import org.slf4j.Logger;
@@ -58,7 +54,7 @@ import org.slf4j.LoggerFactory;
  * @author Markus Michels - Completely refactored
  */
 public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListener {
-    private final Logger                 logger           = LoggerFactory.getLogger(ShellyHandler.class);
+    private final Logger                 logger              = LoggerFactory.getLogger(ShellyHandler.class);
 
     private final NetworkAddressService  networkAddressService;
     private final ShellyHandlerFactory   handlerFactory;
@@ -66,19 +62,26 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
     private ShellyHttpApi                api;
     private ShellyDeviceProfile          profile;
 
-    private ScheduledFuture<?>           statusJob;
-    private int                          skipUpdate       = 0;
-    private int                          scheduledUpdates = 0;
-    private int                          skipCount        = UPDATE_SKIP_COUNT;
-    private int                          skipRefresh      = 0;
-    private int                          refreshCount     = UPDATE_SETTINGS_INTERVAL / UPDATE_STATUS_INTERVAL;
-    private boolean                      refreshSettings  = false;
-    private boolean                      channelCache     = false;
-    protected boolean                    lockUpdates      = false;
-
-    private String                       thingName        = "";
-    private Map<String, Object>          channelData      = new HashMap<>();
-    protected ShellyBindingConfiguration bindingConfig    = new ShellyBindingConfiguration();
+    private ShellyPollScheduler          pollScheduler;
+    private String                       pollKey             = "";
+    private int                          scheduledUpdates    = 0;
+    private long                         lastSettingsRefresh = 0;
+    private volatile long                lastEventTime       = 0;  // 0: no event received since initialization
+    private volatile long                lastCoIoTTime       = 0;
+    private volatile int                 lastCoIoTSerial     = -1;
+    private boolean                      refreshSettings     = false;
+    private volatile int                 lastStatusSerial    = -1; // -1: map the next status completely
+    private long                         lastStatusUptime    = 0;
+    private long                         statusUpdates       = 0;
+    private long                         statusUnchanged     = 0;
+    private long                         statsPublished      = -1; // time of the settings refresh when the ratio was published
+    private final AtomicBoolean          reinitPending       = new AtomicBoolean(); // re-initialization was admitted
+
+    private String                       thingName           = "";
+    private final ShellyChannelCache     cache               = new ShellyChannelCache();
+    private ShellyMeterFilter            meterFilter;
+    private final ShellyWakeTracker      wakeTracker         = new ShellyWakeTracker();
+    protected ShellyBindingConfiguration bindingConfig       = new ShellyBindingConfiguration();
 
     /**
      * @param handlerFactory        Handler Factory instance (will be used for event handler registration)
@@ -106,63 +109,108 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
             config.updateInterval = UPDATE_STATUS_INTERVAL * UPDATE_SKIP_COUNT;
         }
         if (config.updateInterval < UPDATE_MIN_DELAY) {
-            config.updateInterval = UPDATE_MIN_DELAY / UPDATE_STATUS_INTERVAL;
+            config.updateInterval = UPDATE_MIN_DELAY;
         }
-        skipCount = config.updateInterval / UPDATE_STATUS_INTERVAL;
 
-        handlerFactory.registerDeviceListener(this);
-        api = new ShellyHttpApi(config);
+        reinitPending.set(false);
+        meterFilter = new ShellyMeterFilter(config.meterDeadbandAbs, config.meterDeadbandRel, config.meterMaxSilence);
+        pollScheduler = handlerFactory.getPollScheduler();
+        pollKey = getThing().getUID().getAsString();
+        api = new ShellyHttpApi(config, handlerFactory.getHttpClient());
+
+        // Go online with the last known profile, the device gets revalidated in the background
+        ShellyDeviceProfile cached = handlerFactory.getProfileCache().load(pollKey);
+        if ((cached != null) && cached.thingType.equals(getThing().getThingTypeUID().getId())) {
+            initializeFromCache(cached);
+        }
 
-        // Example for background initialization:
-        scheduler.schedule(() -> {
+        // Background initialization, the startup controller spreads initialization of all things over the startup window
+        handlerFactory.getStartupController().admit(pollKey, () -> {
             try {
                 logger.info("Device config: ipAddress={}, http user/password={}/{}, update interval={}, low battery threshold={}%",
                         config.deviceIp, config.userId, config.password.isEmpty() ? "" : "***", config.updateInterval, config.lowBattery);
-                initializeThing();
+                if (profile != null) {
+                    revalidateProfile();
+                } else {
+                    initializeThing();
+                }
             } catch (RuntimeException | IOException e) {
                 logger.info("Unable to initialize thing {}: {}, retrying later", getThing().getLabel(), e.getMessage());
                 // even this initialization failed we start the status update
                 // the updateJob will then try to auto-initialize the thing
                 // in this case the thing stays in status INITIALIZING
             } finally {
-                // start initialization even the initial request to get settings failed
-                if (statusJob == null || statusJob.isCancelled()) {
-                    statusJob = scheduler.scheduleWithFixedDelay(this::updateStatus, 2,
-                            UPDATE_STATUS_INTERVAL, TimeUnit.SECONDS);
-                    Validate.notNull(statusJob, "statusJob must not be null");
-                    logger.debug("Update status job started, interval={}*{}={}sec.", skipCount, UPDATE_STATUS_INTERVAL,
-                            skipCount * UPDATE_STATUS_INTERVAL);
-                }
+                // start status updates even the initial request to get settings failed
+                pollScheduler.register(pollKey, this::updateStatus);
+                pollScheduler.schedule(pollKey, 2);
+                logger.debug("Status updates for {} registered, interval={}sec.", pollKey, config.updateInterval);
             }
+        });
+    }
+
+    /**
+     * Initialize the thing from the cached profile. The thing goes online without any request to the device.
+     */
+    private void initializeFromCache(ShellyDeviceProfile p) {
+        logger.debug("Initializing thing {} from cached profile (firmware {}, mode {})", getThing().getLabel(), p.fwId, p.mode);
+        thingName = getThingName(p);
+        api.setDeviceProfile(p);
+        handlerFactory.registerDeviceListener(thingName, p.mac, this);
+        profile = p;
+        updateStatus(ThingStatus.ONLINE);
+    }
 
-        }, 2, TimeUnit.SECONDS);
+    /**
+     * Compare the cached profile with the device settings. A firmware update or mode change requires a full initialization,
+     * otherwise the fresh profile replaces the cached one.
+     */
+    private void revalidateProfile() throws IOException {
+        ShellyDeviceProfile cached = profile;
+        ShellyDeviceProfile p = api.getDeviceProfile(this.getThing().getThingTypeUID().getId());
+        if (!p.fwId.equals(cached.fwId) || !p.mode.equals(cached.mode)) {
+            logger.info("Device {} changed (firmware {} -> {}, mode {} -> {}), re-initialize thing", thingName, cached.fwId, p.fwId,
+                    cached.mode, p.mode);
+            initializeThing();
+            return;
+        }
+        logger.debug("Cached profile of device {} is up to date", thingName);
+        api.setEventURLs(thingName); // only writes urls which changed, e.g. a new openHAB ip address
+        profile = p;
+        lastSettingsRefresh = System.currentTimeMillis();
+        handlerFactory.getProfileCache().store(pollKey, api.getProfileData());
+    }
+
+    private String getThingName(ShellyDeviceProfile p) {
+        Map<String, String> properties = getThing().getProperties();
+        Validate.notNull(properties, "properties must not be null!");
+        String name = properties.get(PROPERTY_SERVICE_NAME) != null ? properties.get(PROPERTY_SERVICE_NAME) : p.hostname;
+        return name.toLowerCase();
     }
 
     private void initializeThing() throws IOException {
         // Get the thing global settings and initialize device capabilities
         logger.info("Start initializing thing {}, ip address {}", getThing().getLabel(), config.deviceIp);
-        channelData = new HashMap<>();  // clear any cached channels
+        cache.clear(); // publish all channels on the first update
+        meterFilter.clear();
+        lastStatusSerial = -1;
+        lastStatusUptime = 0;
         refreshSettings = false;
-        lockUpdates = false;
+        lastEventTime = 0; // event urls get (re-)registered, wait for the first callback
 
         ShellyDeviceProfile p = api.getDeviceProfile(this.getThing().getThingTypeUID().getId());
+        lastSettingsRefresh = System.currentTimeMillis();
         logger.info("Initializing device {}, type {}, Hardware: Rev: {}, batch {}; Firmware: {} / {} ({}); Thing Type={}",
-                p.hostname, p.settings.device.type, p.hwRev, p.hwBatchId,
+                p.hostname, p.deviceType, p.hwRev, p.hwBatchId,
                 p.fwVersion, p.fwDate, p.fwId, p.thingType);
         logger.debug(
                 "Device {}: has relays: {}, is roller: {}, is Plug S: {},  is Bulb/RGBW2: {}, is HT/Smoke Sensor: {}, has is Sense: {}, Meter: {}, has Battery: {}, has LEDs: {}, numRelays={}, numRoller={}, numMeter={}",
                 p.hostname, p.hasRelays, p.isRoller, p.isPlugS, p.isLight, p.isSensor, p.isSense, p.hasMeter, p.hasBattery, p.hasLed, p.numRelays,
                 p.numRollers, p.numMeters);
-        logger.debug("Shelly settings info for {} : {}", thingName, p.settingsJson);
 
-        Map<String, String> properties = getThing().getProperties();
-        Validate.notNull(properties, "properties must not be null!");
-        thingName = (properties.get(PROPERTY_SERVICE_NAME) != null ? properties.get(PROPERTY_SERVICE_NAME) : p.hostname);
-        thingName = thingName.toLowerCase();
-        Validate.notNull(thingName, "thingName must not be null!");
+        thingName = getThingName(p);
 
         // update thing properties
-        ShellySettingsStatus status = api.gerStatus();
+        ShellySettingsStatus status = api.getStatus();
         updateProperties(p, status);
         if (p.fwVersion.compareTo(SHELLY_API_MIN_FWVERSION) < 0) {
             logger.info("WARNING: Firmware of device {} too old, installed: {}/{} ({}), minimal {} is recommended",
@@ -181,6 +229,8 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
             logger.info("Thing is not in {} mode, going offline. May run discovery to find the thing for the requested mode.");
         }
 
+        // route events and CoIoT updates of this device directly to this handler
+        handlerFactory.registerDeviceListener(thingName, p.mac, this);
         api.setEventURLs(thingName);
 
         if (p.isSense) {
@@ -188,6 +238,7 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
         }
 
         profile = p; // all initialization done, so keep the profile
+        handlerFactory.getProfileCache().store(pollKey, api.getProfileData());
         requestUpdates(3, false); // request 3 updates in a row (during the furst 2+3*3 sec)
         logger.info("Thing {} successfully initialized.", thingName);
     }
@@ -195,6 +246,11 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
     @SuppressWarnings("null")
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
+        if (api == null) {
+            logger.debug("Thing not yet initialized, command {} ignored", command.toString());
+            return;
+        }
+        api.beginCommand(); // device requests of the command get priority over a status update
         try {
             if (profile == null) {
                 logger.info("Thing not yet initialized, command {} triggers initialization", command.toString());
@@ -203,9 +259,14 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
                 profile = getProfile(false);
             }
             if (command instanceof RefreshType) {
-                // TODO: handle data refresh
+                // re-publish the last known state, the next poll brings the current value
+                State state = cache.get(channelUID.getId());
+                if (state != null) {
+                    updateState(channelUID, state);
+                }
                 return;
             }
+            invalidateChannel(channelUID);
 
             // Process command
             String groupName = channelUID.getGroupId();
@@ -216,7 +277,6 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
                 rIndex = Integer.parseInt(StringUtils.substringAfter(channelUID.getGroupId(), CHANNEL_GROUP_ROL_CONTROL)) - 1;
             }
 
-            lockUpdates = true;
             switch (channelUID.getIdWithoutGroup()) {
                 default:
                     logger.trace("Unknown command {} for device {}", channelUID.getAsString(), thingName);
@@ -325,7 +385,7 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
                         channelUID.toString(), e.getMessage(), e.getClass());
             }
         } finally {
-            lockUpdates = false;
+            api.endCommand();
         }
     }
 
@@ -334,211 +394,215 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
      */
     protected void updateStatus() {
         try {
-            skipUpdate++;
-            if (lockUpdates) {
-                logger.trace("Update locked, try on next cycle");
+            if ((profile != null) && profile.hasBattery && !wakeTracker.shouldPoll(System.currentTimeMillis())) {
+                // battery device is sleeping, a request would time out; the channels keep the last reported values
+                logger.trace("{}: Device is sleeping, status update skipped", thingName);
                 return;
             }
-
-            if ((skipUpdate % refreshCount == 0) && (profile != null) && (getThing().getStatus() == ThingStatus.ONLINE)) {
+            if ((profile != null) && (getThing().getStatus() == ThingStatus.ONLINE)
+                    && (System.currentTimeMillis() - lastSettingsRefresh >= UPDATE_SETTINGS_INTERVAL * 1000L)) {
                 refreshSettings |= !profile.hasBattery;
             }
 
-            if (refreshSettings || (scheduledUpdates > 0) || (skipUpdate % skipCount == 0)) {
-                if ((profile == null) || ((getThing().getStatus() == ThingStatus.OFFLINE)
-                        && (getThing().getStatusInfo().getStatusDetail() != ThingStatusDetail.CONFIGURATION_ERROR))) {
-                    logger.info("Status update triggered thing initialization for device {}", thingName);
-                    initializeThing();  // may fire an exception if initialization failed
-                }
+            if ((profile == null) || ((getThing().getStatus() == ThingStatus.OFFLINE)
+                    && (getThing().getStatusInfo().getStatusDetail() != ThingStatusDetail.CONFIGURATION_ERROR))) {
+                reinitialize();
+                return; // the status gets updated once the thing is initialized
+            }
 
-                // Get profile, if refreshSettings == true reload settings from device
-                profile = getProfile(refreshSettings);
-
-                logger.trace("Updating status for device {}", thingName);
-                ShellySettingsStatus status;
-                status = api.gerStatus();
-                logger.debug("Shelly status info for {}: {}", thingName, status.json);
-
-                // map status to channels
-                if (profile.hasRelays && !profile.isRoller) {
-                    logger.trace("{}: Updating {} relay(s)", thingName, profile.numRelays);
-                    int i = 0;
-                    ShellyStatusRelay rstatus = api.getRelayStatus(i);
-                    if (rstatus != null) {
-                        for (ShellyShortStatusRelay relay : rstatus.relays) {
-                            if ((relay.is_valid == null) || relay.is_valid) {
-                                Integer r = i + 1;
-                                String groupName = profile.numRelays == 1 ? CHANNEL_GROUP_RELAY_CONTROL : CHANNEL_GROUP_RELAY_CONTROL + r.toString();
-                                updateChannel(groupName, CHANNEL_RELAY_OUTPUT, getBool(relay.ison) ? OnOffType.ON : OnOffType.OFF);
-                                updateChannel(groupName, CHANNEL_RELAY_OVERPOWER, getBool(relay.overpower));
-                                updateChannel(groupName, CHANNEL_TIMER_ACTIVE, getBool(relay.has_timer) ? OnOffType.ON : OnOffType.OFF);
-                                ShellySettingsRelay rsettings = profile.settings.relays.get(i);
-                                if (rsettings != null) {
-                                    updateChannel(groupName, CHANNEL_TIMER_AUTOON, getDouble(rsettings.auto_on));
-                                    updateChannel(groupName, CHANNEL_TIMER_AUTOOFF, getDouble(rsettings.auto_off));
-                                }
-                            }
-                            i++;
+            logger.trace("Updating status for device {}", thingName);
+            ShellySettingsStatus status;
+            status = api.pollStatus();
+            logger.trace("Shelly status for {}: serial={}, uptime={}", thingName, status.serial, status.uptime);
+
+            // Get profile, reload settings from the device if requested or the status indicates a change
+            String settingsChange = getSettingsChange(status);
+            if (!settingsChange.isEmpty()) {
+                logger.debug("{}: {}, refresh settings", thingName, settingsChange);
+                refreshSettings = true;
+            }
+            profile = getProfile(refreshSettings);
+            boolean unchanged = isStatusUnchanged(status);
+            if (unchanged) {
+                logger.trace("{}: Status serial unchanged, update meters and sensors only", thingName);
+            }
+
+            // map status to channels, relays and rollers are taken directly from the /status document
+            if (!unchanged && profile.hasRelays && !profile.isRoller && (status.relays != null)) {
+                logger.trace("{}: Updating {} relay(s)", thingName, profile.numRelays);
+                int i = 0;
+                for (ShellyShortStatusRelay relay : status.relays) {
+                    if ((relay.is_valid == null) || relay.is_valid) {
+                        String groupName = profile.getRelayGroup(i);
+                        updateChannel(groupName, CHANNEL_RELAY_OUTPUT, getBool(relay.ison) ? OnOffType.ON : OnOffType.OFF);
+                        updateChannel(groupName, CHANNEL_RELAY_OVERPOWER, getBool(relay.overpower));
+                        updateChannel(groupName, CHANNEL_TIMER_ACTIVE, getBool(relay.has_timer) ? OnOffType.ON : OnOffType.OFF);
+                        RelayProfile rsettings = i < profile.relays.size() ? profile.relays.get(i) : null;
+                        if (rsettings != null) {
+                            updateChannel(groupName, CHANNEL_TIMER_AUTOON, getDouble(rsettings.autoOn));
+                            updateChannel(groupName, CHANNEL_TIMER_AUTOOFF, getDouble(rsettings.autoOff));
                         }
                     }
+                    i++;
                 }
-                if (profile.hasRelays && profile.isRoller && (status.rollers != null)) {
-                    logger.trace("{}: Updating {} rollers", thingName, profile.numRollers);
-                    int i = 0;
-                    for (ShellySettingsRoller roller : status.rollers) {
-                        if (roller.is_valid) {
-                            ShellyControlRoller control = api.getRollerStatus(i);
-                            Integer relayIndex = i + 1;
-                            String groupName = profile.numRollers == 1 ? CHANNEL_GROUP_ROL_CONTROL
-                                    : CHANNEL_GROUP_ROL_CONTROL + relayIndex.toString();
-                            // updateChannel(groupName, CHANNEL_ROL_CONTROL_CONTROL, getString(control.state));
-                            if (getString(control.state).equals(SHELLY_ALWD_ROLLER_TURN_STOP)) { // only valid in stop state
-                                updateChannel(groupName, CHANNEL_ROL_CONTROL_CONTROL,
-                                        new PercentType(SHELLY_MAX_ROLLER_POS - getInteger(control.current_pos)));
-                                updateChannel(groupName, CHANNEL_ROL_CONTROL_POS, new PercentType(getInteger(control.current_pos)));
-                            }
-                            updateChannel(groupName, CHANNEL_ROL_CONTROL_DIR, getString(control.last_direction));
-                            updateChannel(groupName, CHANNEL_ROL_CONTROL_STOPR, getString(control.stop_reason));
-                            updateChannel(groupName, CHANNEL_ROL_CONTROL_OVERT, getBool(control.overtemperature));
-
-                            i = i + 1;
+            }
+            if (!unchanged && profile.hasRelays && profile.isRoller && (status.rollers != null)) {
+                logger.trace("{}: Updating {} rollers", thingName, profile.numRollers);
+                int i = 0;
+                for (ShellyControlRoller control : status.rollers) {
+                    if (getBool(control.is_valid)) {
+                        String groupName = profile.getRollerGroup(i);
+                        if (getString(control.state).equals(SHELLY_ALWD_ROLLER_TURN_STOP)) { // only valid in stop state
+                            updateChannel(groupName, CHANNEL_ROL_CONTROL_CONTROL,
+                                    new PercentType(SHELLY_MAX_ROLLER_POS - getInteger(control.current_pos)));
+                            updateChannel(groupName, CHANNEL_ROL_CONTROL_POS, new PercentType(getInteger(control.current_pos)));
                         }
+                        updateChannel(groupName, CHANNEL_ROL_CONTROL_DIR, getString(control.last_direction));
+                        updateChannel(groupName, CHANNEL_ROL_CONTROL_STOPR, getString(control.stop_reason));
+                        updateChannel(groupName, CHANNEL_ROL_CONTROL_OVERT, getBool(control.overtemperature));
+
+                        i = i + 1;
                     }
                 }
+            }
 
-                if (profile.hasMeter && (status.meters != null)) {
-                    if (!profile.isRoller) {
-                        logger.trace("{}: Updating {} standard meters", thingName, profile.numMeters);
-
-                        // In Relay mode we map eacher meter to the matching channel group
-                        int m = 0;
-                        for (ShellySettingsMeter meter : status.meters) {
-                            Integer meterIndex = m + 1;
-                            if (meter.is_valid || profile.isLight) {   // RGBW2-white doesn't report das flag correctly in white mode
-                                String groupName = "";
-                                if (profile.numMeters > 1) {
-                                    groupName = CHANNEL_GROUP_METER + meterIndex.toString();
-                                } else {
-                                    groupName = CHANNEL_GROUP_METER;
-                                }
-                                updateChannel(groupName, CHANNEL_METER_CURRENTWATTS, getDouble(meter.power));
-                                if (meter.total != null) {
-                                    Double kwh = getDouble(meter.total); // Watt/Min
-                                    kwh = kwh / (60.0 * 1000.0);  // convert Watt/Min to kw/h
-                                    updateChannel(groupName, CHANNEL_METER_TOTALWATTS, kwh);
-                                }
-                                if (meter.counters != null) {
-                                    updateChannel(groupName, CHANNEL_METER_LASTMIN1, getDouble(meter.counters[0]));
-                                    updateChannel(groupName, CHANNEL_METER_LASTMIN2, getDouble(meter.counters[1]));
-                                    updateChannel(groupName, CHANNEL_METER_LASTMIN3, getDouble(meter.counters[2]));
-                                }
-                                updateChannel(groupName, CHANNEL_METER_TIMESTAMP, ShellyHandlerFactory.convertTimestamp(getLong(meter.timestamp)));
-                                m++;
+            // meter readings change without a new serial, they are filtered by the meter filter
+            if (profile.hasMeter && (status.meters != null)) {
+                if (!profile.isRoller) {
+                    logger.trace("{}: Updating {} standard meters", thingName, profile.numMeters);
+
+                    // In Relay mode we map eacher meter to the matching channel group
+                    int m = 0;
+                    for (ShellySettingsMeter meter : status.meters) {
+                        if (meter.is_valid || profile.isLight) {   // RGBW2-white doesn't report das flag correctly in white mode
+                            String groupName = profile.getMeterGroup(m);
+                            boolean updated = updateMeter(groupName, CHANNEL_METER_CURRENTWATTS, getDouble(meter.power));
+                            if (meter.total != null) {
+                                Double kwh = getDouble(meter.total); // Watt/Min
+                                kwh = kwh / (60.0 * 1000.0);  // convert Watt/Min to kw/h
+                                updated |= updateMeter(groupName, CHANNEL_METER_TOTALWATTS, kwh);
+                            }
+                            if (meter.counters != null) {
+                                updated |= updateMeter(groupName, CHANNEL_METER_LASTMIN1, getDouble(meter.counters[0]));
+                                updated |= updateMeter(groupName, CHANNEL_METER_LASTMIN2, getDouble(meter.counters[1]));
+                                updated |= updateMeter(groupName, CHANNEL_METER_LASTMIN3, getDouble(meter.counters[2]));
                             }
+                            if (updated) {
+                                updateChannel(groupName, CHANNEL_METER_TIMESTAMP,
+                                        ShellyHandlerFactory.convertTimestamp(getLong(meter.timestamp)));
+                            }
+                            m++;
                         }
-                    } else {
-                        // In Roller Mode we accumulate all meters to a single set of meters
-                        logger.debug("{}: Updating roller meter", thingName);
-                        Double currentWatts = 0.0;
-                        Double totalWatts = 0.0;
-                        Double lastMin1 = 0.0;
-                        Double lastMin2 = 0.0;
-                        Double lastMin3 = 0.0;
-                        Long timestamp = 0l;
-                        String groupName = CHANNEL_GROUP_METER;
-                        for (ShellySettingsMeter meter : status.meters) {
-                            if (meter.is_valid) {
-                                currentWatts += getDouble(meter.power);
-                                totalWatts += getDouble(meter.total);
-                                if (meter.counters != null) {
-                                    lastMin1 += getDouble(meter.counters[0]);
-                                    lastMin2 += getDouble(meter.counters[1]);
-                                    lastMin3 += getDouble(meter.counters[2]);
-                                }
-                                if (getLong(meter.timestamp) > timestamp) {
-                                    timestamp = getLong(meter.timestamp);
-                                }
+                    }
+                } else {
+                    // In Roller Mode we accumulate all meters to a single set of meters
+                    logger.debug("{}: Updating roller meter", thingName);
+                    Double currentWatts = 0.0;
+                    Double totalWatts = 0.0;
+                    Double lastMin1 = 0.0;
+                    Double lastMin2 = 0.0;
+                    Double lastMin3 = 0.0;
+                    Long timestamp = 0l;
+                    String groupName = CHANNEL_GROUP_METER;
+                    for (ShellySettingsMeter meter : status.meters) {
+                        if (meter.is_valid) {
+                            currentWatts += getDouble(meter.power);
+                            totalWatts += getDouble(meter.total);
+                            if (meter.counters != null) {
+                                lastMin1 += getDouble(meter.counters[0]);
+                                lastMin2 += getDouble(meter.counters[1]);
+                                lastMin3 += getDouble(meter.counters[2]);
+                            }
+                            if (getLong(meter.timestamp) > timestamp) {
+                                timestamp = getLong(meter.timestamp);
                             }
                         }
-                        updateChannel(groupName, CHANNEL_METER_LASTMIN1, lastMin1);
-                        updateChannel(groupName, CHANNEL_METER_LASTMIN2, lastMin2);
-                        updateChannel(groupName, CHANNEL_METER_LASTMIN3, lastMin3);
-
-                        // convert totalWatts into kw/h
-                        totalWatts = totalWatts / (60.0 * 10000.0);
-                        updateChannel(groupName, CHANNEL_METER_CURRENTWATTS, currentWatts);
-                        updateChannel(groupName, CHANNEL_METER_TOTALWATTS, totalWatts);
+                    }
+                    boolean updated = updateMeter(groupName, CHANNEL_METER_LASTMIN1, lastMin1);
+                    updated |= updateMeter(groupName, CHANNEL_METER_LASTMIN2, lastMin2);
+                    updated |= updateMeter(groupName, CHANNEL_METER_LASTMIN3, lastMin3);
+
+                    // convert totalWatts into kw/h
+                    totalWatts = totalWatts / (60.0 * 10000.0);
+                    updated |= updateMeter(groupName, CHANNEL_METER_CURRENTWATTS, currentWatts);
+                    updated |= updateMeter(groupName, CHANNEL_METER_TOTALWATTS, totalWatts);
+                    if (updated) {
                         updateChannel(groupName, CHANNEL_METER_TIMESTAMP, ShellyHandlerFactory.convertTimestamp(timestamp));
                     }
                 }
+            }
 
-                if (profile.hasLed) {
-                    Validate.notNull(profile, "LED update: ShellyDeviceProfile must not be null!");
-                    Validate.notNull(profile.settings.led_status_disable, "LED update: led_status_disable must not be null!");
-                    Validate.notNull(profile.settings.led_power_disable, "LED update: led_power_disable must not be null!");
-                    logger.debug("LED disabled status: status led: {}, powerLed: {}", profile.settings.led_status_disable,
-                            profile.settings.led_power_disable);
-                    updateChannel(CHANNEL_GROUP_LED_CONTROL, CHANNEL_LED_STATUS_DISABLE, getBool(profile.settings.led_status_disable));
-                    updateChannel(CHANNEL_GROUP_LED_CONTROL, CHANNEL_LED_POWER_DISABLE, getBool(profile.settings.led_power_disable));
-                }
-
-                if (profile.isSensor || profile.hasBattery) {
-                    logger.debug("{}: Updating sensor", thingName);
-                    ShellyStatusSensor sdata = api.getSensorStatus();
-                    if (sdata != null) {
-                        if (getBool(sdata.tmp.is_valid)) {
-                            updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_TEMP,
-                                    getString(sdata.tmp.units).toUpperCase().equals(SHELLY_TEMP_CELSIUS) ? getDouble(sdata.tmp.tC)
-                                            : getDouble(sdata.tmp.tF));
-                            updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_TUNIT, getString(sdata.tmp.units));
-                            updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_HUM, getDouble(sdata.hum.value));
-                        }
-                        if ((sdata.lux != null) && getBool(sdata.lux.is_valid)) {
-                            updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_LUX, getDouble(sdata.lux.value));
-                        }
-                        if (sdata.bat != null) {
-                            logger.trace("{}: Updating battery", thingName);
-                            updateChannel(CHANNEL_GROUP_BATTERY, CHANNEL_SENSOR_BAT_LEVEL, getDouble(sdata.bat.value));
-                            updateChannel(CHANNEL_GROUP_BATTERY, CHANNEL_SENSOR_BAT_LOW,
-                                    getDouble(sdata.bat.value) < config.lowBattery ? true : false);
-                            if (sdata.bat.value != null) {  // no update for Sense
-                                updateChannel(CHANNEL_GROUP_BATTERY, CHANNEL_SENSOR_BAT_VOLT, getDouble(sdata.bat.voltage));
-                            }
+            if (!unchanged && profile.hasLed) {
+                Validate.notNull(profile, "LED update: ShellyDeviceProfile must not be null!");
+                Validate.notNull(profile.ledStatusDisable, "LED update: led_status_disable must not be null!");
+                Validate.notNull(profile.ledPowerDisable, "LED update: led_power_disable must not be null!");
+                logger.debug("LED disabled status: status led: {}, powerLed: {}", profile.ledStatusDisable, profile.ledPowerDisable);
+                updateChannel(CHANNEL_GROUP_LED_CONTROL, CHANNEL_LED_STATUS_DISABLE, getBool(profile.ledStatusDisable));
+                updateChannel(CHANNEL_GROUP_LED_CONTROL, CHANNEL_LED_POWER_DISABLE, getBool(profile.ledPowerDisable));
+            }
 
-                        }
-                        if (profile.isSense) {
-                            updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_MOTION, getBool(sdata.motion));
-                            updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_CHARGER, getBool(sdata.charger));
-                        }
+            if (profile.isSensor || profile.hasBattery) {
+                logger.debug("{}: Updating sensor", thingName);
+                updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_LAST_UPDATE,
+                        ShellyHandlerFactory.convertTimestamp(System.currentTimeMillis() / 1000));
+                if (status.tmp != null) {
+                    if (getBool(status.tmp.is_valid)) {
+                        updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_TEMP,
+                                getString(status.tmp.units).toUpperCase().equals(SHELLY_TEMP_CELSIUS) ? getDouble(status.tmp.tC)
+                                        : getDouble(status.tmp.tF));
+                        updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_TUNIT, getString(status.tmp.units));
+                        updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_HUM, status.hum != null ? getDouble(status.hum.value) : null);
+                    }
+                }
+                if ((status.lux != null) && getBool(status.lux.is_valid)) {
+                    updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_LUX, getDouble(status.lux.value));
+                }
+                if (status.bat != null) {
+                    logger.trace("{}: Updating battery", thingName);
+                    updateChannel(CHANNEL_GROUP_BATTERY, CHANNEL_SENSOR_BAT_LEVEL, getDouble(status.bat.value));
+                    updateChannel(CHANNEL_GROUP_BATTERY, CHANNEL_SENSOR_BAT_LOW,
+                            getDouble(status.bat.value) < config.lowBattery ? true : false);
+                    if (status.bat.value != null) {  // no update for Sense
+                        updateChannel(CHANNEL_GROUP_BATTERY, CHANNEL_SENSOR_BAT_VOLT, getDouble(status.bat.voltage));
                     }
                 }
+                if (profile.isSense) {
+                    updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_MOTION, getBool(status.motion));
+                    updateChannel(CHANNEL_GROUP_SENSOR, CHANNEL_SENSOR_CHARGER, getBool(status.charger));
+                }
+            }
 
-                // update thing status from specific thing handlers
-                updateThingStatus();
+            // update thing status from specific thing handlers
+            if (!unchanged) {
+                updateThingStatus(status);
+            }
 
-                // update some properties
-                updateProperties(profile, status);
+            // update some properties
+            updateProperties(profile, status);
 
-                // If status update was successful the thing must be online
-                if (getThing().getStatus() != ThingStatus.ONLINE) {
-                    logger.info("Thing {}({}) is now online", getThing().getLabel(), thingName);
-                    updateStatus(ThingStatus.ONLINE);  // if API call was successful the thing must be online
-                }
+            // remember the serial once all channels are mapped, a failed update gets repeated on the next cycle
+            lastStatusSerial = status.serial != null ? status.serial : -1;
+            lastStatusUptime = getLong(status.uptime);
 
-                if (scheduledUpdates > 0) {
-                    --scheduledUpdates;
-                    logger.debug("{} more updates requested", scheduledUpdates);
-                }
-                if (!channelCache && (scheduledUpdates == 0)) {
-                    // logger.debug("Enabling channel cache for device {}", thingName);
-                    // channelCache = true;
-                }
-            } else {
-                // logger.trace("Update skipped {}/{}", (skipUpdate - 1) % skipCount, skipCount);
+            // If status update was successful the thing must be online
+            if (getThing().getStatus() != ThingStatus.ONLINE) {
+                logger.info("Thing {}({}) is now online", getThing().getLabel(), thingName);
+                updateStatus(ThingStatus.ONLINE);  // if API call was successful the thing must be online
             }
-        } catch (
 
-        IOException e) {
+            if (scheduledUpdates > 0) {
+                --scheduledUpdates;
+                logger.debug("{} more updates requested", scheduledUpdates);
+            }
+        } catch (ShellyPollSkippedException e) {
+            logger.trace("{}: {}, try on next cycle", thingName, e.getMessage());
+        } catch (ShellyDeviceUnavailableException e) {
+            // circuit breaker is open: no network access until the next probe is due
+            logger.debug("{}", e.getMessage());
+            if (profile != null && !profile.isSensor) {
+                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+            }
+        } catch (IOException e) {
             // http call failed: go offline except for battery devices, which might be in sleep mode
             // once the next update is successful the device goes back online
             if (e.getMessage().contains("Timeout")) {
@@ -551,16 +615,135 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
             }
         } catch (RuntimeException e) {
             logger.debug("Unable to update status for thing {}: {} ({})", getThing().getLabel(), e.getMessage(), e.getClass());
+        } finally {
+            // schedule next update: short interval while updates are requested, otherwise the configured update interval
+            pollScheduler.schedule(pollKey, getNextPollDelay());
+        }
+    }
+
+    /**
+     * Initialize the thing again through the startup controller. After a WiFi or power outage all things go offline at the same time,
+     * the controller limits the number of initializations running in parallel.
+     */
+    private void reinitialize() {
+        if (!reinitPending.compareAndSet(false, true)) {
+            return; // already admitted
+        }
+        logger.info("Status update triggered thing initialization for device {}", thingName);
+        handlerFactory.getStartupController().admit(pollKey, () -> {
+            try {
+                initializeThing();
+            } catch (RuntimeException | IOException e) {
+                logger.debug("Unable to initialize thing {}: {}, retrying later", getThing().getLabel(), e.getMessage());
+            } finally {
+                reinitPending.set(false);
+            }
+        });
+    }
+
+    /**
+     * Check the status for changes which require to reload the settings: a reboot (uptime goes backwards), a firmware update or
+     * a different device mode. Changes by a command are covered by requestUpdates().
+     *
+     * @param status device status
+     * @return reason for a settings refresh, empty if the profile is still valid
+     */
+    private String getSettingsChange(ShellySettingsStatus status) {
+        if ((status.uptime != null) && (status.uptime < lastStatusUptime)) {
+            return "Device was restarted";
+        }
+        if ((status.update != null) && !getString(status.update.old_version).isEmpty()
+                && !StringUtils.substringAfter(status.update.old_version, "@").equals(profile.fwId)) {
+            return "Firmware changed to " + status.update.old_version;
+        }
+        if (profile.isLight && !profile.isBulb && (status.lights != null) && ((status.lights.size() == 1) != profile.inColor)) {
+            return "Light mode changed"; // RGBW2 has 1 channel in color and 4 channels in white mode
+        }
+        if (profile.isRoller ? (status.rollers == null) : ((status.rollers != null) && !status.rollers.isEmpty())) {
+            // a Shelly2 reports the relays also in roller mode, only the rollers indicate the mode
+            return "Relay/roller mode changed";
+        }
+        return "";
+    }
+
+    /**
+     * The device increments the serial with every state change. If serial and uptime continue the last cycle (no reboot in between)
+     * relays, rollers, LEDs and lights didn't change and don't need to be mapped again.
+     *
+     * @param status device status
+     * @return true if the state is unchanged since the last status update
+     */
+    private boolean isStatusUnchanged(ShellySettingsStatus status) {
+        statusUpdates++;
+        if ((status.serial == null) || (status.uptime == null)) {
+            return false;
+        }
+        if ((status.serial == lastStatusSerial) && (status.uptime >= lastStatusUptime)) {
+            statusUnchanged++;
+            return true;
         }
+        return false;
+    }
+
+    private String getStatusUnchangedRatio() {
+        long percent = statusUpdates > 0 ? statusUnchanged * 100 / statusUpdates : 0;
+        return percent + "% (" + statusUnchanged + "/" + statusUpdates + ")";
+    }
 
+    /**
+     * Compute the delay until the next status update
+     *
+     * @return delay in seconds
+     */
+    protected int getNextPollDelay() {
+        long retryDelay = api != null ? api.getRetryDelay() : 0;
+        if (retryDelay > 0) {
+            return (int) Math.max(1, (retryDelay + 999) / 1000); // device is not responding, poll when the next probe is due
+        }
+        if (refreshSettings || (scheduledUpdates > 0)) {
+            return UPDATE_STATUS_INTERVAL;
+        }
+        int delay = isEventDriven() ? Math.max(config.updateInterval, UPDATE_EVENT_INTERVAL) : config.updateInterval;
+        if ((profile != null) && profile.hasBattery) {
+            long wakeDelay = wakeTracker.getDelayUntilWake(System.currentTimeMillis());
+            if (wakeDelay >= 0) {
+                delay = (int) Math.max(1, Math.min(delay, (wakeDelay + 999) / 1000)); // poll on the expected wake-up
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Check if the device pushes its state changes by events. In this case polling is only used as a slow consistency check. The
+     * mode gets active once the first callback was received (the device is able to reach the binding).
+     *
+     * @return true if channels are updated by events
+     */
+    protected boolean isEventDriven() {
+        if (profile == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastCoIoTTime < UPDATE_COIOT_TIMEOUT * 1000L) {
+            // the CoIoT serial changes with the device state, but not with new power meter readings
+            return !profile.hasMeter;
+        }
+        if (lastEventTime == 0) {
+            return false;
+        }
+        if (profile.hasRelays && !profile.isRoller) {
+            // output changes are reported by out_on/out_off, but power meter readings are not
+            return config.eventsRelaySwitch && !profile.hasMeter;
+        }
+        return profile.isSensor && config.eventsSensorReport;
     }
 
     /**
      * Device specific handlers are overriding this method to do additional stuff
      *
+     * @param status the /status document of the current poll cycle
      * @throws IOException Communication problem on the API call
      */
-    public void updateThingStatus() throws IOException {
+    public void updateThingStatus(ShellySettingsStatus status) throws IOException {
         logger.trace("No secondary updates for device {}", thingName);
     }
 
@@ -573,43 +756,124 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
      */
     @Override
     public void onEvent(String deviceName, String deviceIndex, String type, Map<String, String[]> parameters, String data) {
-        if (thingName.equals(deviceName)) {
-            logger.debug("Event received for device {}: class={}, index={}, parameters={}", deviceName, type, deviceIndex,
-                    parameters.toString());
-            if (profile == null) {
-                logger.info("Device {} is not yet initialized, event will trigger initialization", deviceName);
-            }
+        logger.debug("Event received for device {}: class={}, index={}, parameters={}", deviceName, type, deviceIndex,
+                parameters.toString());
+        lastEventTime = System.currentTimeMillis();
+        if (profile == null) {
+            logger.info("Device {} is not yet initialized, event will trigger initialization", deviceName);
+            requestUpdates(1, false);
+            return;
+        }
 
-            int i = 0;
-            String payload = "{\"device\":\"" + deviceName + "\", \"class\":\"" + type + "\", \"index\":\"" + deviceIndex
-                    + "\",\"parameters\":[";
-            for (String key : parameters.keySet()) {
-                if (i++ > 0) {
-                    payload = payload + ", ";
-                }
-                String[] values = parameters.get(key);
-                payload = payload + "{\"" + key + "\":\"" + values[0] + "\"}";
+        int i = 0;
+        String payload = "{\"device\":\"" + deviceName + "\", \"class\":\"" + type + "\", \"index\":\"" + deviceIndex
+                + "\",\"parameters\":[";
+        for (String key : parameters.keySet()) {
+            if (i++ > 0) {
+                payload = payload + ", ";
             }
-            payload = payload + "]}";
+            String[] values = parameters.get(key);
+            payload = payload + "{\"" + key + "\":\"" + values[0] + "\"}";
+        }
+        payload = payload + "]}";
 
-            String channel = "";
-            Integer rindex = !deviceIndex.isEmpty() ? Integer.parseInt(deviceIndex) + 1 : -1;
-            if (type.equals(EVENT_TYPE_RELAY) && profile.hasRelays) {
-                channel = profile.numRelays == 1 ? CHANNEL_GROUP_RELAY_CONTROL : CHANNEL_GROUP_RELAY_CONTROL + rindex.toString();
+        String channel = "";
+        int index = !deviceIndex.isEmpty() ? Integer.parseInt(deviceIndex) : -2;
+        if (type.equals(EVENT_TYPE_RELAY) && profile.hasRelays) {
+            channel = profile.getRelayGroup(index);
+        }
+        if (type.equals(EVENT_TYPE_ROLLER) && profile.hasRelays) {
+            channel = profile.getRollerGroup(index);
+        }
+        if (type.equals(EVENT_TYPE_SENSORDATA)) {
+            channel = CHANNEL_GROUP_SENSOR;
+        }
+        Validate.isTrue(!channel.isEmpty(), "Unsupported event class: " + type);
+
+        String group = channel;
+        channel = channel + CHANNEL_GROUP_SEPARATOR + CHANNEL_EVENT_TRIGGER;
+        logger.debug("Trigger {} event, channel {}, payload={}", type, channel, payload);
+        triggerChannel(channel, payload);
+
+        // apply the reported values directly, poll the device only if the event doesn't include the new state
+        if (type.equals(EVENT_TYPE_SENSORDATA) && profile.hasBattery) {
+            // learn the wake schedule, getNextPollDelay() polls on the expected wake-up
+            wakeTracker.onWake(lastEventTime);
+        }
+        if (!applyEvent(type, group, parameters) && (scheduledUpdates == 0)) {
+            requestUpdates(1, false); // request status update on next interval, settings didn't change
+        }
+    }
+
+    /**
+     * Decode the known event parameters and update the channels. Battery devices go back to sleep right after sending the report, a
+     * status request would usually time out.
+     *
+     * @param type       event class (relay, roller, sensordata)
+     * @param group      channel group of the device
+     * @param parameters event parameters
+     * @return true if the event included the new state, false if the status has to be requested from the device
+     */
+    private boolean applyEvent(String type, String group, Map<String, String[]> parameters) {
+        if (type.equals(EVENT_TYPE_RELAY)) {
+            // out_on/out_off reports the new output state
+            String event = getEventParameter(parameters, EVENT_PARM_TYPE).toLowerCase();
+            if (event.equals(EVENT_OUT_ON) || event.equals(EVENT_OUT_OFF)) {
+                updateChannel(group, CHANNEL_RELAY_OUTPUT, event.equals(EVENT_OUT_ON) ? OnOffType.ON : OnOffType.OFF);
+                return true;
+            }
+        } else if (type.equals(EVENT_TYPE_SENSORDATA)) {
+            // HT/Smoke: report_url is called with hum=xx&temp=xx, Sense with lux=xx
+            Double temp = getEventValue(parameters, EVENT_PARM_TEMP);
+            Double hum = getEventValue(parameters, EVENT_PARM_HUM);
+            Double lux = getEventValue(parameters, EVENT_PARM_LUX);
+            if (temp != null) {
+                updateChannel(group, CHANNEL_SENSOR_TEMP, temp);
             }
-            if (type.equals(EVENT_TYPE_ROLLER) && profile.hasRelays) {
-                channel = profile.numRollers == 1 ? CHANNEL_GROUP_ROL_CONTROL : CHANNEL_GROUP_ROL_CONTROL + rindex.toString();
+            if (hum != null) {
+                updateChannel(group, CHANNEL_SENSOR_HUM, hum);
             }
-            if (type.equals(EVENT_TYPE_SENSORDATA)) {
-                channel = CHANNEL_GROUP_SENSOR;
+            if (lux != null) {
+                updateChannel(group, CHANNEL_SENSOR_LUX, lux);
             }
-            Validate.isTrue(!channel.isEmpty(), "Unsupported event class: " + type);
+            updateChannel(group, CHANNEL_SENSOR_LAST_UPDATE,
+                    ShellyHandlerFactory.convertTimestamp(System.currentTimeMillis() / 1000));
+            return (temp != null) || (hum != null) || (lux != null);
+        }
+        return false;
+    }
 
-            channel = channel + CHANNEL_GROUP_SEPARATOR + CHANNEL_EVENT_TRIGGER;
-            logger.debug("Trigger {} event, channel {}, payload={}", type, channel, payload);
-            triggerChannel(channel, payload);
+    private static String getEventParameter(Map<String, String[]> parameters, String name) {
+        String[] values = parameters.get(name);
+        return (values != null) && (values.length > 0) && (values[0] != null) ? values[0] : "";
+    }
+
+    private Double getEventValue(Map<String, String[]> parameters, String name) {
+        String value = getEventParameter(parameters, name);
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            logger.debug("{}: Invalid value for event parameter {}: {}", thingName, name, value);
+            return null;
+        }
+    }
 
-            requestUpdates(scheduledUpdates > 0 ? 0 : 1, true);    // request update on next interval
+    /**
+     * Callback for CoIoT status updates: fetch the device status once the status serial has changed
+     */
+    @Override
+    public void onCoIoTUpdate(String deviceType, String mac, int serial) {
+        if (profile == null) {
+            return;
+        }
+        lastCoIoTTime = System.currentTimeMillis();
+        if (serial != lastCoIoTSerial) {
+            logger.trace("{}: CoIoT serial changed from {} to {}, updating status", thingName, lastCoIoTSerial, serial);
+            lastCoIoTSerial = serial;
+            pollScheduler.schedule(pollKey, 0); // next tick
         }
     }
 
@@ -628,57 +892,49 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
         }
         if (scheduledUpdates < 10) {  // < 30s
             scheduledUpdates += requestCount;
+            if (pollScheduler != null) {
+                pollScheduler.schedule(pollKey, UPDATE_STATUS_INTERVAL);
+            }
             return true;
         }
         return false;
     }
 
+    /**
+     * Update a channel, the state is published only if it has changed
+     *
+     * @param group   channel group
+     * @param channel channel name
+     * @param value   new value (String, Integer, Long, Double, Boolean or a State)
+     * @return true if the state was published
+     */
     protected boolean updateChannel(String group, String channel, Object value) {
+        return updateChannel(group, channel, value, false);
+    }
+
+    /**
+     * Update a channel
+     *
+     * @param group   channel group
+     * @param channel channel name
+     * @param value   new value (String, Integer, Long, Double, Boolean or a State)
+     * @param force   true: publish the state even if it's unchanged
+     * @return true if the state was published
+     */
+    private boolean updateChannel(String group, String channel, Object value, boolean force) {
         if (value == null) {
             logger.trace("Update channel: value is null!");
             return false;
         }
         try {
-            String channelId = mkChannelName(group, channel);
-            Object current = channelData.get(channelId);
-            // logger.trace("Predict channel {}.{} to become {} (type {}).", group, channel, value, value.getClass());
-            if (!channelCache || (current == null) || !current.equals(value)) {
-                if (value instanceof String) {
-                    updateState(channelId, new StringType((String) value));
-                }
-                if (value instanceof Integer) {
-                    Integer v = (Integer) value;
-                    updateState(channelId, new DecimalType(v));
-                }
-                if (value instanceof Long) {
-                    Long v = (Long) value;
-                    updateState(channelId, new DecimalType(v));
-                }
-                if (value instanceof Double) {
-                    Double v = (Double) value;
-                    updateState(channelId, new DecimalType(v));
-                }
-                if (value instanceof Boolean) {
-                    Boolean v = (Boolean) value;
-                    updateState(channelId, v ? OnOffType.ON : OnOffType.OFF);
-                }
-                if (value instanceof OnOffType) {
-                    OnOffType v = (OnOffType) value;
-                    updateState(channelId, v);
-                }
-                if (value instanceof PercentType) {
-                    PercentType v = (PercentType) value;
-                    updateState(channelId, new PercentType(new BigDecimal(v.doubleValue())));
-                }
-                if (value instanceof HSBType) {
-                    HSBType v = (HSBType) value;
-                    updateState(channelId, v);
-                }
-                if (current == null) {
-                    channelData.put(channelId, value);
-                } else {
-                    channelData.replace(channelId, value);
-                }
+            State state = ShellyChannelCache.toState(value);
+            Validate.notNull(state, "Unsupported value type");
+            String channelId = cache.getChannelId(group, channel);
+            if (force) {
+                cache.put(channelId, state);
+            }
+            if (force || cache.update(channelId, state)) {
+                updateState(channelId, state);
                 logger.trace("Channel {}.{} updated with {} (type {}).", group, channel, value, value.getClass());
                 return true;
             }
@@ -687,12 +943,40 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
                     e.getMessage(), e.getClass());
         }
         return false;
+    }
 
+    /**
+     * Update a meter channel, the reading is published only if it passes the meter deadband
+     *
+     * @return true if the reading was published
+     */
+    protected boolean updateMeter(String group, String channel, Double value) {
+        String channelId = cache.getChannelId(group, channel);
+        boolean accepted;
+        if (channel.equals(CHANNEL_METER_TOTALWATTS)) {
+            accepted = meterFilter.acceptAbsolute(channelId, value, config.meterDeadbandTotal);
+        } else if (channel.equals(CHANNEL_METER_CURRENTWATTS)) {
+            accepted = meterFilter.accept(channelId, value);
+        } else {
+            accepted = meterFilter.acceptAbsolute(channelId, value); // lastMin counters
+        }
+        // the filter passes only changed readings or a repeated reading after the max silence interval, which the cache would suppress
+        return accepted && updateChannel(group, channel, value, true);
     }
 
-    protected Object getChannelValue(String group, String channel) {
-        String key = mkChannelName(group, channel);
-        return channelData.get(key);
+    /**
+     * A command was sent to the channel: the item may have been updated by autoupdate, but the command could also fail. Forget the
+     * cached state, so the next status gets published even if it's the old state.
+     *
+     * @param channelUID channel which received the command
+     */
+    protected void invalidateChannel(ChannelUID channelUID) {
+        cache.invalidate(channelUID.getId());
+        lastStatusSerial = -1; // the serial doesn't change if the command failed
+    }
+
+    protected State getChannelValue(String group, String channel) {
+        return cache.get(cache.getChannelId(group, channel));
     }
 
     protected void updateProperties(ShellyDeviceProfile profile, ShellySettingsStatus status) {
@@ -700,6 +984,11 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
         properties.put(PROPERTY_MODE, profile.mode);
         properties.put(PROPERTY_TIME, status.time);
         properties.put(PROPERTY_UPTIME, status.uptime.toString() + "sec");
+        if (statsPublished != lastSettingsRefresh) {
+            // the ratio changes with every poll, publish it with the settings refresh only (every property update gets persisted)
+            properties.put(PROPERTY_STATUS_UNCHANGED, getStatusUnchangedRatio());
+            statsPublished = lastSettingsRefresh;
+        }
         if (status.wifi_sta != null) {
             properties.put(PROPERTY_WIFI_NETW, getString(status.wifi_sta.ssid));
             properties.put(PROPERTY_WIFI_RSSI, getInteger(status.wifi_sta.rssi).toString());
@@ -709,8 +998,8 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
         properties.put(PROPERTY_UPDATE_AVAILABLE, status.update.has_update ? "yes" : "no");
         properties.put(PROPERTY_UPDATE_CURR_VERS, status.update.old_version);
         properties.put(PROPERTY_UPDATE_NEWV_ERS, status.update.new_version);
-        if (profile.settings.max_power != null) {
-            properties.put(PROPERTY_MAX_POWER, getDouble(profile.settings.max_power).toString());
+        if (profile.maxPower != null) {
+            properties.put(PROPERTY_MAX_POWER, profile.maxPower.toString());
         }
         /*
          * if (profile.settings.dcpower != null) { Double maxPower = getDouble(profile.settings.dcpower); properties.put("dcPower",
@@ -721,17 +1010,19 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
         logger.trace("{}: Properties updated", thingName);
     }
 
-    protected static String mkChannelName(String group, String channel) {
-        return group + "#" + channel;
-    }
-
     protected ShellyDeviceProfile getProfile(boolean forceRefresh) throws IOException {
         refreshSettings |= forceRefresh;
 
         if (refreshSettings) {
             logger.trace("Refresh settings for device {}", thingName);
-            profile = api.getDeviceProfile(this.getThing().getThingTypeUID().getId());
+            ShellyDeviceProfile p = api.getDeviceProfile(this.getThing().getThingTypeUID().getId());
+            if ((profile == null) || !p.fwId.equals(profile.fwId) || !p.mode.equals(profile.mode)) {
+                handlerFactory.getProfileCache().store(pollKey, api.getProfileData());
+            }
+            profile = p;
             refreshSettings = false;
+            lastSettingsRefresh = System.currentTimeMillis();
+            lastStatusSerial = -1; // LED and timer settings are taken from the profile
         }
 
         return profile;
@@ -742,14 +1033,22 @@ public class ShellyHandler extends BaseThingHandler implements ShellyDeviceListe
         Validate.isTrue((value >= min) && (value <= max), "Value " + name + " is out of range (" + min.toString() + "-" + max.toString() + ")");
     }
 
+    @Override
+    public void handleRemoval() {
+        handlerFactory.getProfileCache().remove(getThing().getUID().getAsString());
+        super.handleRemoval();
+    }
+
     @Override
     public void dispose() {
-        logger.debug("Shutdown thing {}", thingName);
+        logger.debug("Shutdown thing {} ({} channel updates published, {} unchanged suppressed, status unchanged: {})", thingName,
+                cache.getPublished(), cache.getSuppressed(), getStatusUnchangedRatio());
         try {
-            if (statusJob != null) {
-                statusJob.cancel(true);
-                statusJob = null;
-                logger.debug("Shelly statusJob topped");
+            handlerFactory.getStartupController().cancel(pollKey);
+            handlerFactory.unregisterDeviceListener(this);
+            if (pollScheduler != null) {
+                pollScheduler.unregister(pollKey);
+                logger.debug("Status updates for {} stopped", pollKey);
             }
         } catch (Exception e) {
             logger.debug("Exception on dispose(): {} ({})", e.getMessage(), e.getClass());
@@ -13,7 +13,12 @@ import static org.openhab.binding.shelly.internal.api.ShellyHttpApi.*;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
@@ -25,13 +30,15 @@ import org.eclipse.smarthome.core.library.types.PercentType;
 import org.eclipse.smarthome.core.net.NetworkAddressService;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.openhab.binding.shelly.internal.ShellyHandlerFactory;
-import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusLight;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsStatus;
 import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusLightChannel;
+import org.openhab.binding.shelly.internal.api.ShellyDeviceProfile;
 import org.openhab.binding.shelly.internal.api.ShellyHttpApi;
-import org.openhab.binding.shelly.internal.api.ShellyHttpApi.ShellyDeviceProfile;
 import org.openhab.binding.shelly.internal.config.ShellyBindingConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,10 +51,13 @@ import org.slf4j.LoggerFactory;
  */
 
 public class ShellyHandlerLight extends ShellyHandler {
-    private final Logger           logger        = LoggerFactory.getLogger(ShellyHandler.class);
-    private ShellyHttpApi          api;
+    private final Logger                         logger        = LoggerFactory.getLogger(ShellyHandler.class);
+    private final ShellyHandlerFactory           handlerFactory;
+    private ShellyHttpApi                        api;
 
-    Map<Integer, ShellyColorUtils> channelColors = new HashMap<Integer, ShellyColorUtils>();
+    Map<Integer, ShellyColorUtils>               channelColors = new ConcurrentHashMap<>(); // updated by poll, command and I/O threads
+    private final Map<Integer, ShellyColorUtils> pendingColors = new HashMap<>(); // latest colors per light, not yet sent
+    private final Set<Integer>                   sendingLights = new HashSet<>(); // lights with a request in progress
 
     /**
      * @param thing                 The thing passed by the HandlerFactory
@@ -57,6 +67,7 @@ public class ShellyHandlerLight extends ShellyHandler {
     public ShellyHandlerLight(Thing thing, ShellyHandlerFactory handlerFactory, ShellyBindingConfiguration bindingConfig,
             NetworkAddressService networkAddressService) {
         super(thing, handlerFactory, bindingConfig, networkAddressService);
+        this.handlerFactory = handlerFactory;
     }
 
     @Override
@@ -66,16 +77,28 @@ public class ShellyHandlerLight extends ShellyHandler {
         api = super.getShellyApi();
     }
 
+    @Override
+    public void dispose() {
+        synchronized (pendingColors) {
+            pendingColors.clear(); // don't send colors to a disposed thing
+        }
+        super.dispose();
+    }
+
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
+        if (command instanceof RefreshType) {
+            super.handleCommand(channelUID, command);
+            return;
+        }
+        if (api == null) {
+            logger.debug("Thing not yet initialized, command {} ignored", command.toString());
+            return;
+        }
 
+        api.beginCommand(); // device requests of the command get priority over a status update
         try {
-            if (command instanceof RefreshType) {
-                super.handleCommand(channelUID, command);
-                return;
-            }
-
-            super.lockUpdates = true;
+            invalidateChannel(channelUID);
 
             String groupName = channelUID.getGroupId();
             Integer lightId = getLightIdFromGroup(groupName);
@@ -84,7 +107,7 @@ public class ShellyHandlerLight extends ShellyHandler {
             ShellyDeviceProfile profile = super.getProfile(false);
             Validate.notNull(profile, "DeviceProfile must not be null, thing not initialized");
 
-            ShellyColorUtils oldCol = getCurrentColors(lightId);
+            ShellyColorUtils oldCol = getPendingColors(lightId); // private copy, the current colors are shared with the poll
             Validate.notNull(oldCol, "oldCol must not be null");
             oldCol.mode = profile.mode;
             ShellyColorUtils col = new ShellyColorUtils(oldCol);
@@ -92,6 +115,7 @@ public class ShellyHandlerLight extends ShellyHandler {
 
             logger.debug("Execute light command {} on channel {}", command.toString(), channelUID.getAsString());
             boolean update = true;
+            boolean refreshSettings = true;
             switch (channelUID.getIdWithoutGroup()) {
                 default: // non-bulb commands will be handled by the generic handler
                     super.handleCommand(channelUID, command);
@@ -167,22 +191,27 @@ public class ShellyHandlerLight extends ShellyHandler {
             }
 
             if (update) {
+                refreshSettings = channelUID.getIdWithoutGroup().equals(CHANNEL_LIGHT_POWER); // power commands refresh as before
+
                 // check for switching color mode
                 if (profile.isBulb && !col.mode.isEmpty() && !col.mode.equals(oldCol.mode)) {
                     logger.info("Color mode changed from {} to {}, set new mode", oldCol.mode, col.mode);
                     api.setLightMode(col.mode);
+                    refreshSettings = true;
                 }
 
-                // send changed colors to the device
-                sendColors(profile, lightId, oldCol, col);
+                // send changed colors with the next batch, the status gets refreshed once the batch was sent
+                queueColors(lightId, col);
             }
 
-            super.requestUpdates(1, true);  // always do a refresh after a command
+            if (refreshSettings) {
+                super.requestUpdates(1, true);  // always do a refresh after a command
+            }
         } catch (RuntimeException | IOException e) {
             logger.info("ERROR: Unable to process command for channel {}: {} ({})",
                     channelUID.toString(), e.getMessage(), e.getClass());
         } finally {
-            super.lockUpdates = false;
+            api.endCommand();
         }
 
     }
@@ -255,27 +284,114 @@ public class ShellyHandlerLight extends ShellyHandler {
         return true;
     }
 
+    /**
+     * @return the colors of the light including changes which were not sent yet
+     */
+    private ShellyColorUtils getPendingColors(Integer lightId) {
+        synchronized (pendingColors) {
+            ShellyColorUtils col = pendingColors.get(lightId);
+            return col != null ? new ShellyColorUtils(col) : getCurrentColors(lightId);
+        }
+    }
+
+    /**
+     * Queue the new colors of a light. A slider sends many commands per second, commands within a short window are merged into a
+     * single request. Only the latest colors are kept, while a request is in progress the next batch waits for it.
+     *
+     * @param lightId light index
+     * @param col     new colors
+     */
+    private void queueColors(Integer lightId, ShellyColorUtils col) {
+        synchronized (pendingColors) {
+            boolean scheduled = pendingColors.containsKey(lightId) || sendingLights.contains(lightId);
+            pendingColors.put(lightId, col);
+            if (!scheduled) {
+                scheduleColors(lightId);
+            }
+        }
+    }
+
+    private void scheduleColors(Integer lightId) {
+        try {
+            scheduler.schedule(() -> dispatchColors(lightId), LIGHT_COMMAND_WINDOW_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // scheduler is shutting down, don't keep the entry or the light would be treated as scheduled forever
+            pendingColors.remove(lightId);
+            logger.debug("Unable to schedule colors for lightId {}: {}", lightId, e.getMessage());
+        }
+    }
+
+    private void dispatchColors(Integer lightId) {
+        ShellyIoExecutor executor = handlerFactory.getIoExecutor();
+        try {
+            if (executor != null) {
+                executor.execute(() -> flushColors(lightId));
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.debug("I/O executor rejected colors for lightId {}: {}", lightId, e.getMessage());
+        }
+        flushColors(lightId); // send the colors on the scheduler thread
+    }
+
+    private void flushColors(Integer lightId) {
+        ShellyColorUtils col;
+        synchronized (pendingColors) {
+            col = pendingColors.remove(lightId);
+            if (col == null) {
+                return;
+            }
+            sendingLights.add(lightId);
+        }
+
+        api.beginCommand();
+        try {
+            ShellyDeviceProfile profile = super.getProfile(false);
+            Validate.notNull(profile, "DeviceProfile must not be null, thing not initialized");
+            sendColors(profile, lightId, getCurrentColors(lightId), col);
+            super.requestUpdates(1, false); // the colors are part of the status, settings didn't change
+        } catch (RuntimeException | IOException e) {
+            if ((e.getMessage() != null) && e.getMessage().contains("401 Unauthorized")) {
+                logger.warn("Device {} reported 'Access denied' (userid/password mismatch). Set userid/password for the thing or in the binding config",
+                        getThing().getLabel());
+                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
+                        "Access denied, set userid/password for the thing or in the binding config");
+            } else {
+                logger.info("ERROR: Unable to send colors for lightId {}: {} ({})", lightId, e.getMessage(), e.getClass());
+                super.requestUpdates(1, false); // the queued colors are lost, show the device state
+            }
+        } finally {
+            api.endCommand();
+            synchronized (pendingColors) {
+                sendingLights.remove(lightId);
+                if (pendingColors.containsKey(lightId)) {
+                    scheduleColors(lightId); // colors changed while the request was in progress
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the current colors, the map entries are replaced but never modified
+     */
     private ShellyColorUtils getCurrentColors(Integer lightId) {
         ShellyColorUtils col = channelColors.get(lightId);
         if (col == null) {
-            col = new ShellyColorUtils();  // create a new entry
             logger.trace("Colors entry created for lightId {}", lightId.toString());
-        } else {
-            logger.trace("Colors loaded for lightId {}: RGBW={}/{}/{}/{}, gain={}, brightness={}, color temp={} ",
-                    lightId.toString(), col.red, col.green, col.blue, col.white, col.gain, col.brightness, col.temp);
+            return new ShellyColorUtils();  // create a new entry
         }
-        return col;
+        logger.trace("Colors loaded for lightId {}: RGBW={}/{}/{}/{}, gain={}, brightness={}, color temp={} ",
+                lightId.toString(), col.red, col.green, col.blue, col.white, col.gain, col.brightness, col.temp);
+        return new ShellyColorUtils(col);
     }
 
     @Override
-    public void updateThingStatus() throws IOException {
+    public void updateThingStatus(ShellySettingsStatus status) throws IOException {
 
         ShellyDeviceProfile profile = super.getProfile(false);
         Validate.notNull(profile, "updateThingStatus(): profile must not be null!");
         Validate.isTrue(profile.isLight, "ERROR: Device " + profile.hostname + " is not a light. but class ShellyHandlerLight is called!");
-
-        ShellyStatusLight status = api.getLightStatus();
-        Validate.notNull(status, "updateThingStatus(): status must not be null!");
+        Validate.notNull(status.lights, "updateThingStatus(): status.lights must not be null!");
         logger.debug("Updating bulb/rgw2 status for {}, in {} mode, {} channel(s)", profile.hostname, profile.mode, status.lights.size());
 
         // In white mode we have multiple channels
@@ -283,9 +399,9 @@ public class ShellyHandlerLight extends ShellyHandler {
         for (ShellyStatusLightChannel light : status.lights) {
             Integer channelId = lightId + 1;
             logger.trace("Updating lightId {}/{}", lightId, channelId.toString());
-            String controlGroup = buildControlGroupName(profile, channelId);
+            String controlGroup = profile.getLightControlGroup(channelId);
 
-            logger.debug("Updating light channels {}.{} (mode={})", profile.hostname, controlGroup, getString(profile.settings.mode));
+            logger.debug("Updating light channels {}.{} (mode={})", profile.hostname, controlGroup, profile.mode);
 
             // The bulb has a combined channel set for color or white mode
             // The RGBW2 uses 2 different thing types: color=1 channel, white=4 channel
@@ -325,7 +441,7 @@ public class ShellyHandlerLight extends ShellyHandler {
                 super.updateChannel(colorGroup, CHANNEL_COLOR_PICKER, col.toHSB());
             }
             if (!profile.inColor || profile.isBulb) {
-                String whiteGroup = buildWhiteGroupName(profile, channelId);
+                String whiteGroup = profile.getLightWhiteGroup(channelId);
                 logger.trace("update white settings for {}.{}", whiteGroup, channelId);
                 col.setBrightness(getInteger(light.brightness));
                 super.updateChannel(whiteGroup, CHANNEL_COLOR_BRIGHTNESS, col.percentBrightness);
@@ -336,6 +452,7 @@ public class ShellyHandlerLight extends ShellyHandler {
                     super.updateChannel(whiteGroup, CHANNEL_COLOR_PICKER, col.toHSB());
                 }
             }
+            channelColors.put(lightId, col); // publish the new colors
 
             // continue with next light
             lightId++;
@@ -423,11 +540,7 @@ public class ShellyHandlerLight extends ShellyHandler {
     }
 
     private void updateCurrentColors(Integer lightId, ShellyColorUtils col) {
-        if (channelColors.get(lightId) == null) {
-            channelColors.put(lightId, col);
-        } else {
-            channelColors.replace(lightId, col);
-        }
+        channelColors.put(lightId, new ShellyColorUtils(col));
         logger.debug("Colors updated for lightId {}: RGBW={}/{}/{}/{}, Sat/Gain={}, Bright={}, Temp={} ",
                 lightId.toString(), col.red, col.green, col.blue, col.white, col.gain, col.brightness, col.temp);
     }
@@ -449,16 +562,6 @@ public class ShellyHandlerLight extends ShellyHandler {
         return 0; // only 1 light, e.g. bulb or rgbw2 in color mode
     }
 
-    private static String buildControlGroupName(ShellyDeviceProfile profile, Integer channelId) {
-        return profile.isBulb || profile.inColor ? CHANNEL_GROUP_LIGHT_CONTROL
-                : CHANNEL_GROUP_LIGHT_CHANNEL + channelId.toString();
-    }
-
-    private static String buildWhiteGroupName(ShellyDeviceProfile profile, Integer channelId) {
-        return profile.isBulb && !profile.inColor ? CHANNEL_GROUP_WHITE_CONTROL
-                : CHANNEL_GROUP_LIGHT_CHANNEL + channelId.toString();
-    }
-
     @Override
     protected void validateRange(String name, Integer value, Integer min, Integer max) throws IllegalArgumentException {
         super.validateRange(name, value, min, max);
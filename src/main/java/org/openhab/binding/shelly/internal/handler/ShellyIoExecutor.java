@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ShellyIoExecutor} runs the blocking device I/O (status updates, thing initialization) of all Shelly things, so slow or
+ * unreachable devices don't occupy the threads of the shared openHAB scheduler. Virtual threads are used if the Java runtime provides
+ * them, otherwise a bounded pool of daemon threads. In both cases the number of tasks running in parallel is capped.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyIoExecutor implements Executor {
+    private static final String   THREAD_NAME        = "OH-binding-shelly-io-";
+    private static final int      KEEP_ALIVE_SECONDS = 60;
+
+    private final Logger          logger             = LoggerFactory.getLogger(ShellyIoExecutor.class);
+    private final ExecutorService delegate;
+    private final Semaphore       permits;
+    private final boolean         virtual;
+    private final AtomicInteger   threadCount        = new AtomicInteger();
+
+    /**
+     * @param maxRequests max number of tasks running in parallel
+     */
+    public ShellyIoExecutor(int maxRequests) {
+        permits = new Semaphore(Math.max(1, maxRequests));
+        ExecutorService executor = createVirtualThreadExecutor();
+        virtual = executor != null;
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxRequests, maxRequests, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, THREAD_NAME + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        delegate = executor;
+        logger.debug("Shelly I/O executor started: {}, max {} requests in parallel", virtual ? "virtual threads" : "thread pool",
+                maxRequests);
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() is available since Java 21, the binding still runs on Java 8
+     *
+     * @return the executor or null if the runtime doesn't support virtual threads
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return; // executor is shutting down
+            }
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * @return true if the tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Stop the executor, running tasks get interrupted
+     */
+    public void shutdown() {
+        delegate.shutdownNow();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@link ShellyMeterFilter} implements a deadband for the meter channels. A new reading is published if it differs from the last
+ * published value by more than the deadband or the max silence interval has elapsed. Changes from/to 0 are always published.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyMeterFilter {
+    private final double               deadbandAbs;     // absolute deadband
+    private final double               deadbandRel;     // relative deadband (fraction of the last published value)
+    private final long                 maxSilenceMs;    // publish at least every x ms
+    private final LongSupplier         clock;
+    private final Map<String, Reading> published = new ConcurrentHashMap<>();
+
+    private static class Reading {
+        final double value;
+        final long   time;
+
+        Reading(double value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+
+    /**
+     * @param deadbandAbs      absolute deadband, 0=disabled
+     * @param deadbandRel      relative deadband in %, 0=disabled
+     * @param maxSilenceSeconds max time without a publish, 0=no limit
+     */
+    public ShellyMeterFilter(double deadbandAbs, double deadbandRel, int maxSilenceSeconds) {
+        this(deadbandAbs, deadbandRel, maxSilenceSeconds, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock time source in ms (the tests use a simulated clock)
+     */
+    ShellyMeterFilter(double deadbandAbs, double deadbandRel, int maxSilenceSeconds, LongSupplier clock) {
+        this.clock = clock;
+        this.deadbandAbs = Math.max(0, deadbandAbs);
+        this.deadbandRel = Math.max(0, deadbandRel) / 100.0;
+        this.maxSilenceMs = Math.max(0, maxSilenceSeconds) * 1000L;
+    }
+
+    /**
+     * Check the new reading against the deadband of the channel
+     *
+     * @param channelId channel id
+     * @param value     new reading
+     * @return true if the value should be published
+     */
+    public boolean accept(String channelId, double value) {
+        return accept(channelId, value, deadbandAbs, deadbandRel);
+    }
+
+    /**
+     * Check a counter reading against the absolute deadband only. The relative deadband doesn't apply to counters, for a cumulative
+     * counter it would grow with the counter value.
+     *
+     * @param channelId channel id
+     * @param value     new reading
+     * @return true if the value should be published
+     */
+    public boolean acceptAbsolute(String channelId, double value) {
+        return accept(channelId, value, deadbandAbs, 0);
+    }
+
+    /**
+     * Check a counter reading against a channel specific absolute deadband
+     *
+     * @param channelId   channel id
+     * @param value       new reading
+     * @param deadbandAbs absolute deadband for this channel
+     * @return true if the value should be published
+     */
+    public boolean acceptAbsolute(String channelId, double value, double deadbandAbs) {
+        return accept(channelId, value, deadbandAbs, 0);
+    }
+
+    private boolean accept(String channelId, double value, double deadbandAbs, double deadbandRel) {
+        long now = clock.getAsLong();
+        Reading last = published.get(channelId);
+        if ((last == null) || changed(last.value, value, deadbandAbs, deadbandRel)
+                || ((maxSilenceMs > 0) && (now - last.time >= maxSilenceMs))) {
+            published.put(channelId, new Reading(value, now));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forget the published values, the next reading of each channel passes the filter
+     */
+    public void clear() {
+        published.clear();
+    }
+
+    private boolean changed(double last, double value, double deadbandAbs, double deadbandRel) {
+        if ((last == 0) != (value == 0)) {
+            return true; // device turned on/off
+        }
+        double threshold = Math.max(deadbandAbs, deadbandRel * Math.abs(last));
+        return Math.abs(value - last) > threshold;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ShellyPollScheduler} is a hashed timer wheel shared by all Shelly things. Each thing registers its poll task and the
+ * delay until the next poll is due. A single tick job advances the wheel and dispatches only the things, which are due - the number
+ * of wakeups doesn't depend on the number of things.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyPollScheduler {
+    public static final int                TICK_SECONDS = 1;
+    private static final int               WHEEL_SIZE   = 64;   // slots, a full round of the wheel = 64 ticks
+
+    private final Logger                   logger       = LoggerFactory.getLogger(ShellyPollScheduler.class);
+    private final ScheduledExecutorService scheduler;
+    private final Executor                 executor;
+
+    private final List<Set<PollEntry>>     wheel        = new ArrayList<>(WHEEL_SIZE);
+    private final Map<String, PollEntry>   entries      = new HashMap<>();
+    private long                           currentTick  = 0;
+    private ScheduledFuture<?>             tickJob;
+
+    private static class PollEntry {
+        final String   key;
+        final Runnable task;
+        long           dueTick = -1;    // -1: not scheduled
+        boolean        running = false; // true while the poll task is executing
+
+        PollEntry(String key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+    }
+
+    /**
+     * @param scheduler scheduler running the tick job
+     * @param executor  executor running the poll tasks
+     */
+    public ShellyPollScheduler(ScheduledExecutorService scheduler, Executor executor) {
+        this.scheduler = scheduler;
+        this.executor = executor;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Register the poll task of a thing. The task will not run before {@link #schedule(String, int)} was called.
+     *
+     * @param key  unique key, e.g. the thing UID
+     * @param task poll task
+     */
+    public synchronized void register(String key, Runnable task) {
+        unregister(key);
+        entries.put(key, new PollEntry(key, task));
+        if (tickJob == null) {
+            tickJob = scheduler.scheduleAtFixedRate(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+            logger.debug("Poll scheduler started");
+        }
+    }
+
+    /**
+     * Remove a thing from the scheduler, a running poll will complete, but is not rescheduled.
+     *
+     * @param key the key used to register the task
+     */
+    public synchronized void unregister(String key) {
+        PollEntry entry = entries.remove(key);
+        if (entry != null) {
+            removeFromWheel(entry);
+        }
+        if (entries.isEmpty() && (tickJob != null)) {
+            tickJob.cancel(false);
+            tickJob = null;
+            logger.debug("Poll scheduler stopped");
+        }
+    }
+
+    /**
+     * Schedule the next poll. If the thing is already scheduled the earlier due time wins, so requesting an update never delays
+     * an already scheduled poll.
+     *
+     * @param key          the key used to register the task
+     * @param delaySeconds delay until the poll is due
+     * @return true if the thing is registered
+     */
+    public synchronized boolean schedule(String key, int delaySeconds) {
+        PollEntry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        long dueTick = currentTick + Math.max(1, (delaySeconds + TICK_SECONDS - 1) / TICK_SECONDS);
+        if ((entry.dueTick == -1) || (dueTick < entry.dueTick)) {
+            removeFromWheel(entry);
+            entry.dueTick = dueTick;
+            wheel.get(slotOf(dueTick)).add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Cancel all scheduled polls
+     */
+    public synchronized void stop() {
+        if (tickJob != null) {
+            tickJob.cancel(false);
+            tickJob = null;
+        }
+        entries.clear();
+        wheel.forEach(Set::clear);
+    }
+
+    /**
+     * Advance the wheel by one tick and dispatch all entries of the current slot, which are due
+     */
+    private void tick() {
+        List<PollEntry> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            Iterator<PollEntry> it = wheel.get(slotOf(currentTick)).iterator();
+            while (it.hasNext()) {
+                PollEntry entry = it.next();
+                if (entry.dueTick > currentTick) {
+                    continue; // due in a later round of the wheel
+                }
+                it.remove();
+                if (entry.running) {
+                    // previous poll still active, check again on the next tick
+                    entry.dueTick = currentTick + 1;
+                    wheel.get(slotOf(entry.dueTick)).add(entry);
+                    continue;
+                }
+                entry.dueTick = -1;
+                entry.running = true;
+                due.add(entry);
+            }
+        }
+
+        for (PollEntry entry : due) {
+            try {
+                executor.execute(() -> run(entry));
+            } catch (RuntimeException e) {
+                logger.debug("Unable to dispatch poll for {}: {} ({})", entry.key, e.getMessage(), e.getClass());
+                synchronized (this) {
+                    entry.running = false;
+                    if ((entries.get(entry.key) == entry) && (entry.dueTick == -1)) {
+                        // retry on the next tick, otherwise the thing would never be polled again
+                        entry.dueTick = currentTick + 1;
+                        wheel.get(slotOf(entry.dueTick)).add(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void run(PollEntry entry) {
+        try {
+            entry.task.run();
+        } catch (RuntimeException e) {
+            logger.debug("Poll for {} failed: {} ({})", entry.key, e.getMessage(), e.getClass());
+        } finally {
+            synchronized (this) {
+                entry.running = false;
+            }
+        }
+    }
+
+    private void removeFromWheel(PollEntry entry) {
+        if (entry.dueTick != -1) {
+            wheel.get(slotOf(entry.dueTick)).remove(entry);
+            entry.dueTick = -1;
+        }
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick % WHEEL_SIZE);
+    }
+}
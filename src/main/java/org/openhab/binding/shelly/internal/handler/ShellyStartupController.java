@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ShellyStartupController} controls the admission of thing initializations. After a restart all things are initialized at
+ * the same time, which floods the WiFi with requests. The controller spreads the initializations over a startup window (each device
+ * gets a stable phase offset plus some jitter) and limits the number of initializations running in parallel.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyStartupController {
+    public static final int                       INIT_MIN_DELAY_MS = 2000;  // minimum delay before a thing gets initialized
+    private static final int                      INIT_RETRY_MS     = 500;   // retry interval when max parallel initializations are active
+    private static final int                      INIT_JITTER_MS    = 500;
+
+    private final Logger                          logger            = LoggerFactory.getLogger(ShellyStartupController.class);
+    private final ScheduledExecutorService        scheduler;
+    private final Executor                        executor;
+    private final Semaphore                       permits;
+    private final int                             windowMs;
+    private final long                            startTime         = System.currentTimeMillis();
+    private final Random                          random            = new Random();
+
+    private final Map<String, ScheduledFuture<?>> pending           = new ConcurrentHashMap<>();
+    private final AtomicInteger                   admitted          = new AtomicInteger();
+    private final AtomicInteger                   completed         = new AtomicInteger();
+    private volatile boolean                      startupReported   = false;
+    private volatile boolean                      stopped           = false;
+
+    /**
+     * @param scheduler     scheduler timing the initializations
+     * @param executor      executor running the initializations (blocking device I/O)
+     * @param windowSeconds startup window, initializations are spread over this period
+     * @param maxParallel   max number of initializations running at the same time
+     */
+    public ShellyStartupController(ScheduledExecutorService scheduler, Executor executor, int windowSeconds, int maxParallel) {
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.windowMs = Math.max(0, windowSeconds) * 1000;
+        this.permits = new Semaphore(Math.max(1, maxParallel));
+    }
+
+    /**
+     * Schedule the initialization of a thing. Within the startup window the thing is delayed by its phase offset.
+     *
+     * @param key  unique key, e.g. the thing UID
+     * @param task initialization task
+     */
+    public void admit(String key, Runnable task) {
+        cancel(key);
+        admitted.incrementAndGet();
+        long elapsed = System.currentTimeMillis() - startTime;
+        long delay = Math.max(INIT_MIN_DELAY_MS, getPhaseOffset(key) - elapsed);
+        logger.trace("Initialization of {} admitted, start in {}ms", key, delay);
+        schedule(key, task, delay);
+    }
+
+    /**
+     * Cancel a pending initialization (e.g. thing was disposed before it was initialized)
+     *
+     * @param key the key used for admission
+     */
+    public void cancel(String key) {
+        ScheduledFuture<?> job = pending.remove(key);
+        if ((job != null) && job.cancel(false)) {
+            admitted.decrementAndGet();
+        }
+    }
+
+    /**
+     * Cancel all pending initializations, no new initializations are scheduled afterwards
+     */
+    public void stop() {
+        stopped = true;
+        for (ScheduledFuture<?> job : pending.values()) {
+            job.cancel(false);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Compute the phase offset of a device within the startup window: stable per device plus some random jitter
+     *
+     * @param key device key
+     * @return offset in ms
+     */
+    public long getPhaseOffset(String key) {
+        long phase = windowMs > 0 ? Math.floorMod(key.hashCode(), windowMs) : 0;
+        return phase + random.nextInt(INIT_JITTER_MS);
+    }
+
+    private void schedule(String key, Runnable task, long delay) {
+        if (stopped) {
+            return;
+        }
+        pending.put(key, scheduler.schedule(() -> {
+            if (!stopped) {
+                executor.execute(() -> run(key, task));
+            }
+        }, delay, TimeUnit.MILLISECONDS));
+    }
+
+    private void run(String key, Runnable task) {
+        if (!permits.tryAcquire()) {
+            // too many initializations running, don't block the thread, try again later
+            schedule(key, task, INIT_RETRY_MS + random.nextInt(INIT_JITTER_MS));
+            return;
+        }
+        pending.remove(key);
+        try {
+            task.run();
+        } finally {
+            permits.release();
+            int done = completed.incrementAndGet();
+            if (!startupReported && pending.isEmpty() && (done >= admitted.get())) {
+                startupReported = true;
+                logger.info("Shelly startup completed: {} thing(s) initialized in {}ms", done, System.currentTimeMillis() - startTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+/**
+ * The {@link ShellyWakeTracker} learns the wake schedule of a battery device from its sensor reports. The device is reachable only
+ * for a few seconds after a report, so status requests are limited to this window and to the expected next wake up. Outside these
+ * windows the last reported values are kept.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyWakeTracker {
+    public static final long  WAKE_WINDOW_MS = 5000;  // the device stays awake a few seconds after sending a report
+    private static final long WAKE_POLL_MS   = 1000;  // poll 1s after the expected wake-up
+    private static final int  MIN_REPORTS    = 2;     // wake-ups required before the schedule is trusted
+
+    private long              lastWake       = 0;
+    private long              period         = 0;     // smoothed interval between wake-ups in ms, 0: unknown
+    private int               reports        = 0;
+
+    /**
+     * The device sent a report, it's awake right now
+     *
+     * @param now current time in ms
+     */
+    public synchronized void onWake(long now) {
+        if (lastWake > 0) {
+            long interval = now - lastWake;
+            if (interval > WAKE_WINDOW_MS) { // multiple reports of the same wake-up don't count
+                period = period == 0 ? interval : Math.round(0.7 * period + 0.3 * interval);
+                reports++;
+            }
+        } else {
+            reports++;
+        }
+        lastWake = now;
+    }
+
+    /**
+     * @return true once enough reports have been received to predict the next wake-up
+     */
+    public synchronized boolean isLearned() {
+        return (reports >= MIN_REPORTS) && (period > 0);
+    }
+
+    /**
+     * Check if the device can be polled. As long as the schedule is unknown every poll is allowed.
+     *
+     * @param now current time in ms
+     * @return true if the device is expected to be awake
+     */
+    public synchronized boolean shouldPoll(long now) {
+        if (lastWake == 0) {
+            return true; // no report received yet (e.g. report url not supported), keep polling
+        }
+        if (now - lastWake < WAKE_WINDOW_MS) {
+            return true;
+        }
+        if (!isLearned()) {
+            return false;
+        }
+        long next = getNextWake(now);
+        return (now >= next - WAKE_WINDOW_MS) && (now < next + WAKE_WINDOW_MS);
+    }
+
+    /**
+     * @param now current time in ms
+     * @return ms until the device should be polled on its next expected wake-up, -1 if the schedule is unknown
+     */
+    public synchronized long getDelayUntilWake(long now) {
+        if (!isLearned()) {
+            return -1;
+        }
+        long next = getNextWake(now);
+        if (now >= next) {
+            next += period; // the current wake-up was already handled
+        }
+        return Math.max(0, next + WAKE_POLL_MS - now);
+    }
+
+    /**
+     * @return time of the last report, 0 if none was received
+     */
+    public synchronized long getLastWake() {
+        return lastWake;
+    }
+
+    private long getNextWake(long now) {
+        // skip wake-ups which were missed (e.g. report lost), the device keeps its interval
+        long next = lastWake + period;
+        if (now >= next + WAKE_WINDOW_MS) {
+            next += ((now - next) / period) * period;
+            if (now >= next + WAKE_WINDOW_MS) {
+                next += period;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.shelly.internal.handler.ShellyDeviceListener;
+
+/**
+ * Tests for the event routing of {@link ShellyHandlerFactory}: events and CoIoT updates are delivered only to the handler of the
+ * device.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyHandlerFactoryTest {
+    private static final int             HANDLERS       = 500;
+
+    private final ShellyHandlerFactory   handlerFactory = new ShellyHandlerFactory();
+    private final List<RecordingHandler> handlers       = new ArrayList<>();
+
+    private static class RecordingHandler implements ShellyDeviceListener {
+        int events  = 0;
+        int updates = 0;
+        int serial  = -1;
+
+        @Override
+        public void onEvent(String deviceName, String deviceIndex, String eventType, Map<String, String[]> parameters, String data) {
+            events++;
+        }
+
+        @Override
+        public void onCoIoTUpdate(String deviceType, String mac, int serial) {
+            updates++;
+            this.serial = serial;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < HANDLERS; i++) {
+            RecordingHandler handler = new RecordingHandler();
+            handlerFactory.registerDeviceListener(getName(i), getMac(i), handler);
+            handlers.add(handler);
+        }
+    }
+
+    @Test
+    public void eventIsDeliveredToTheDevice() {
+        handlerFactory.onEvent("ShellySwitch-000123", "0", "out_on", new HashMap<>(), "");
+        assertEquals("device name is not case sensitive", 1, handlers.get(123).events);
+        assertEquals(1, totalEvents());
+    }
+
+    @Test
+    public void eventForUnknownDeviceIsIgnored() {
+        handlerFactory.onEvent("shellyswitch-unknown", "0", "out_on", new HashMap<>(), "");
+        assertEquals(0, totalEvents());
+    }
+
+    @Test
+    public void coiotUpdateIsRoutedByMac() {
+        handlerFactory.onCoIoTUpdate("SHSW-1", getMac(42).toUpperCase(), 17);
+        assertEquals(1, handlers.get(42).updates);
+        assertEquals(17, handlers.get(42).serial);
+    }
+
+    @Test
+    public void unregisteredHandlerGetsNoEvents() {
+        RecordingHandler handler = handlers.get(7);
+        handlerFactory.unregisterDeviceListener(handler);
+        handlerFactory.onEvent(getName(7), "0", "out_on", new HashMap<>(), "");
+        handlerFactory.onCoIoTUpdate("SHSW-1", getMac(7), 1);
+        assertEquals(0, handler.events);
+        assertEquals(0, handler.updates);
+    }
+
+    @Test
+    public void registrationIsReplaced() {
+        RecordingHandler handler = handlers.get(3);
+        handlerFactory.registerDeviceListener("shellyswitch-renamed", getMac(3), handler);
+        handlerFactory.onEvent(getName(3), "0", "out_on", new HashMap<>(), "");
+        assertEquals("old name is removed", 0, handler.events);
+        handlerFactory.onEvent("shellyswitch-renamed", "0", "out_on", new HashMap<>(), "");
+        assertEquals(1, handler.events);
+    }
+
+    @Test
+    public void failingHandlerDoesntBreakRouting() {
+        handlerFactory.registerDeviceListener(getName(9), getMac(9), new RecordingHandler() {
+            @Override
+            public void onEvent(String deviceName, String deviceIndex, String eventType, Map<String, String[]> parameters,
+                    String data) {
+                throw new IllegalStateException("handler failed");
+            }
+        });
+        handlerFactory.onEvent(getName(9), "0", "out_on", new HashMap<>(), "");
+        handlerFactory.onEvent(getName(10), "0", "out_on", new HashMap<>(), "");
+        assertEquals(1, handlers.get(10).events);
+    }
+
+    /**
+     * Micro benchmark: the cost of an event must not depend on the number of registered handlers
+     */
+    @Test
+    public void routingThroughput() {
+        Map<String, String[]> parameters = new HashMap<>();
+        String[] names = new String[HANDLERS];
+        for (int i = 0; i < HANDLERS; i++) {
+            names[i] = getName(i);
+        }
+        int events = 1000000;
+        for (int i = 0; i < events / 10; i++) { // warm up
+            handlerFactory.onEvent(names[i % HANDLERS], "0", "out_on", parameters, "");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            handlerFactory.onEvent(names[i % HANDLERS], "0", "out_on", parameters, "");
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("Event routing with %d handlers: %d events in %dms, %.0f ns/event", HANDLERS, events,
+                nanos / 1000000, (double) nanos / events));
+        for (RecordingHandler handler : handlers) {
+            assertEquals("each event reaches exactly one handler", (events + events / 10) / HANDLERS, handler.events);
+        }
+    }
+
+    private int totalEvents() {
+        return handlers.stream().mapToInt(h -> h.events).sum();
+    }
+
+    private static String getName(int index) {
+        return String.format("shellyswitch-%06d", index);
+    }
+
+    private static String getMac(int index) {
+        return String.format("a4cf12%06x", index);
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.api.ShellyCircuitBreaker.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.shelly.internal.api.ShellyCircuitBreaker.State;
+
+/**
+ * Tests for {@link ShellyCircuitBreaker}: state transitions, the adaptive timeout and the retry backoff. The breaker runs on a
+ * simulated clock.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyCircuitBreakerTest {
+    private static final int     MAX_TIMEOUT = 2500;
+
+    private long                 now         = 1000000;
+    private ShellyCircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        breaker = new ShellyCircuitBreaker(MAX_TIMEOUT, () -> now);
+    }
+
+    @Test
+    public void circuitOpensAfterThreshold() {
+        for (int i = 1; i < FAILURE_THRESHOLD; i++) {
+            breaker.onFailure();
+            assertEquals(State.CLOSED, breaker.check());
+        }
+        breaker.onFailure();
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(State.OPEN, breaker.check());
+        assertEquals(FAILURE_THRESHOLD, breaker.getFailures());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(100);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(State.CLOSED, breaker.check());
+        assertEquals(2, breaker.getFailures());
+    }
+
+    @Test
+    public void onlyFirstCallerGetsProbe() {
+        open();
+        now += breaker.getRetryDelay();
+        assertEquals(State.HALF_OPEN, breaker.check());
+        assertEquals(State.OPEN, breaker.check());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void successfulProbeClosesCircuit() {
+        open();
+        now += breaker.getRetryDelay();
+        assertEquals(State.HALF_OPEN, breaker.check());
+        breaker.onSuccess(50);
+        assertEquals(State.CLOSED, breaker.check());
+        assertEquals(0, breaker.getRetryDelay());
+        assertEquals(0, breaker.getFailures());
+    }
+
+    @Test
+    public void failedProbeDoublesBackoff() {
+        open();
+        assertRetryDelay(MIN_BACKOFF_MS);
+
+        now += breaker.getRetryDelay();
+        assertEquals(State.HALF_OPEN, breaker.check());
+        breaker.onFailure();
+        assertEquals(State.OPEN, breaker.getState());
+        assertRetryDelay(MIN_BACKOFF_MS * 2);
+
+        now += breaker.getRetryDelay();
+        assertEquals(State.HALF_OPEN, breaker.check());
+        breaker.onFailure();
+        assertRetryDelay(MIN_BACKOFF_MS * 4);
+    }
+
+    @Test
+    public void backoffIsCappedAndResetBySuccess() {
+        open();
+        for (int i = 0; i < 20; i++) {
+            now += breaker.getRetryDelay();
+            assertEquals(State.HALF_OPEN, breaker.check());
+            breaker.onFailure();
+        }
+        assertRetryDelay(MAX_BACKOFF_MS);
+
+        now += breaker.getRetryDelay();
+        assertEquals(State.HALF_OPEN, breaker.check());
+        breaker.onSuccess(100);
+        open();
+        assertRetryDelay(MIN_BACKOFF_MS);
+    }
+
+    @Test
+    public void retryJitterSpreadsDevices() {
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            setUp();
+            open();
+            assertRetryDelay(MIN_BACKOFF_MS);
+            delays.add(breaker.getRetryDelay());
+        }
+        assertTrue("devices which failed together must not retry in sync", delays.size() > 1);
+    }
+
+    @Test
+    public void timeoutWithoutSampleIsMax() {
+        assertEquals(MAX_TIMEOUT, breaker.getTimeout());
+    }
+
+    @Test
+    public void timeoutFollowsRoundTripTime() {
+        // first sample: srtt=rtt, rttvar=rtt/2 -> rto = rtt + 4 * rtt/2
+        breaker.onSuccess(400);
+        assertEquals(1200, breaker.getTimeout());
+
+        // stable round trip times shrink the variation
+        for (int i = 0; i < 50; i++) {
+            breaker.onSuccess(400);
+        }
+        assertEquals(MIN_TIMEOUT_MS, breaker.getTimeout());
+    }
+
+    @Test
+    public void timeoutIsClamped() {
+        breaker.onSuccess(10);
+        assertEquals(MIN_TIMEOUT_MS, breaker.getTimeout());
+
+        breaker = new ShellyCircuitBreaker(MAX_TIMEOUT, () -> now);
+        breaker.onSuccess(5000);
+        assertEquals(MAX_TIMEOUT, breaker.getTimeout());
+    }
+
+    private void open() {
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    private void assertRetryDelay(long backoff) {
+        long delay = breaker.getRetryDelay();
+        assertTrue("retry delay " + delay + " below " + backoff / 2, delay >= backoff / 2);
+        assertTrue("retry delay " + delay + " above " + backoff, delay <= backoff);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.api.ShellyHttpApi.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Load test for the shared http transport: many {@link ShellyHttpApi} instances poll the status through one {@link HttpClient}, the
+ * test reports requests/sec and the latency percentiles.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyHttpApiLoadTest {
+    private static final int          DEVICES = 50;
+    private static final int          WORKERS = 8;
+
+    private final List<ShellyHttpApi> apis    = new ArrayList<>();
+    private ShellyTestServer          server;
+    private HttpClient                httpClient;
+    private ExecutorService           executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ShellyTestServer(WORKERS);
+        server.respond(SHELLY_URL_STATUS, 200, ShellyTestServer.load(getClass(), "status-shelly2.json"));
+        httpClient = new HttpClient();
+        httpClient.setMaxConnectionsPerDestination(SHELLY_API_MAX_CONN_PER_HOST * WORKERS); // all devices share the stub
+        httpClient.start();
+        for (int i = 0; i < DEVICES; i++) {
+            apis.add(new ShellyHttpApi(server.getConfig(), httpClient));
+        }
+        executor = Executors.newFixedThreadPool(WORKERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void statusRequestThroughput() throws Exception {
+        run(1000); // warm up
+        int requests = 10000;
+        long start = System.nanoTime();
+        long[] latencies = run(requests);
+        long nanos = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.println(String.format(
+                "Status requests, %d devices, %d workers: %d requests in %dms, %.0f requests/sec, p50=%.2fms, p99=%.2fms, max=%.2fms",
+                DEVICES, WORKERS, requests, nanos / 1000000, requests * 1e9 / nanos, percentile(latencies, 50) / 1e6,
+                percentile(latencies, 99) / 1e6, latencies[latencies.length - 1] / 1e6));
+        assertEquals(1000 + requests, server.getRequests());
+    }
+
+    /**
+     * Poll the status of the devices round robin
+     *
+     * @return latency of each request in ns
+     */
+    private long[] run(int requests) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < WORKERS; w++) {
+            workers.add(executor.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long start = System.nanoTime();
+                    assertEquals(Integer.valueOf(1), apis.get(i % DEVICES).getStatus().serial);
+                    latencies[i] = System.nanoTime() - start;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.api.ShellyHttpApi.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsDevice;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsStatus;
+import org.openhab.binding.shelly.internal.config.ShellyThingConfiguration;
+
+/**
+ * Tests for the transport of {@link ShellyHttpApi} against a local stub device: responses are stream-parsed and errors are detected
+ * by the http status, not by the content of the body.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyHttpApiTest {
+    private ShellyTestServer server;
+    private HttpClient       httpClient;
+    private ShellyHttpApi    api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ShellyTestServer(4);
+        httpClient = new HttpClient();
+        httpClient.start();
+        api = new ShellyHttpApi(server.getConfig(), httpClient);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void statusIsParsed() throws IOException {
+        server.respond(SHELLY_URL_STATUS, 200, ShellyTestServer.load(getClass(), "status-shelly2.json"));
+        ShellySettingsStatus status = api.getStatus();
+        assertEquals("CC50E3559F55", status.mac);
+        assertEquals(2, status.relays.size());
+        assertEquals("stop", status.rollers.get(0).state);
+        assertEquals(Long.valueOf(777069), status.uptime);
+
+        status = api.pollStatus();
+        assertEquals(Integer.valueOf(1), status.serial);
+    }
+
+    @Test
+    public void devInfoIsParsed() throws IOException {
+        server.respond(SHELLY_URL_DEVINFO, 200,
+                "{\"type\":\"SHSW-21\",\"mac\":\"CC50E3559F55\",\"auth\":false,\"fw\":\"20190531-075812/v1.5.0-hotfix2@022ec015\"}");
+        ShellySettingsDevice info = api.getDevInfo();
+        assertEquals("SHSW-21", info.type);
+        assertFalse(info.auth);
+    }
+
+    @Test
+    public void settingsFlagsAreDetectedWhileParsing() throws IOException {
+        server.respond(SHELLY_URL_SETTINGS, 200, ShellyTestServer.load(getClass(), "settings-shelly2.json"));
+        ShellyDeviceProfile profile = api.getDeviceProfile("shelly2-relay");
+        assertEquals("shellyswitch-559f55", profile.hostname);
+        assertEquals(2, profile.numRelays);
+        assertTrue("btn_on_url is reported", profile.supportsActionUrls);
+        assertFalse("report_url is not reported", profile.supportsSensorUrls);
+        assertNotNull(api.getProfileData());
+    }
+
+    @Test
+    public void unauthorizedIsDetectedByStatus() {
+        server.respond(SHELLY_URL_STATUS, 401, "");
+        assertError("401 Unauthorized", () -> api.getStatus());
+        server.respond(SHELLY_URL_CONTROL_RELEAY + "/0", 401, "Access denied");
+        assertError("401 Unauthorized", () -> api.setRelayTurn(0, "on"));
+    }
+
+    @Test
+    public void errorStatusIsNotParsed() {
+        server.respond(SHELLY_URL_STATUS, 500, "{\"serial\":1}");
+        assertError("(500)", () -> api.getStatus());
+        server.respond(SHELLY_URL_CONTROL_RELEAY + "/0", 400, "Bad turn!");
+        assertError("Bad turn!", () -> api.setRelayTurn(0, "on"));
+    }
+
+    @Test
+    public void errorBodyIsTruncated() {
+        char[] body = new char[100000];
+        Arrays.fill(body, 'x');
+        server.respond(SHELLY_URL_STATUS, 500, new String(body));
+        IOException e = assertError("(500)", () -> api.getStatus());
+        assertTrue(e.getMessage().length() < SHELLY_API_MAX_ERROR_SIZE + 200);
+    }
+
+    @Test
+    public void bodyTextDoesntIndicateAnError() throws IOException {
+        server.respond(SHELLY_URL_STATUS, 200, "{\"time\":\"401 Unauthorized\",\"serial\":3}");
+        assertEquals(Integer.valueOf(3), api.getStatus().serial);
+        server.respond(SHELLY_URL_CONTROL_RELEAY + "/0", 200, "401 Unauthorized");
+        assertEquals("401 Unauthorized", api.request(SHELLY_URL_CONTROL_RELEAY + "/0"));
+    }
+
+    @Test
+    public void invalidDocumentIsRejected() {
+        server.respond(SHELLY_URL_STATUS, 200, "<html><body>Shelly</body></html>");
+        assertError("Shelly API call failed", () -> api.getStatus());
+        server.respond(SHELLY_URL_STATUS, 200, "");
+        assertError("Empty response", () -> api.getStatus());
+        server.respond(SHELLY_URL_STATUS, 200, "{\"serial\":1,\"relays\":[");
+        assertError("Shelly API call failed", () -> api.getStatus());
+    }
+
+    @Test
+    public void credentialsAreSent() throws Exception {
+        ShellyThingConfiguration config = server.getConfig();
+        config.userId = "admin";
+        config.password = "secret";
+        api = new ShellyHttpApi(config, httpClient);
+        server.respond(SHELLY_URL_STATUS, 200, "{\"serial\":1}");
+        api.getStatus();
+        assertEquals("Basic " + Base64.getEncoder().encodeToString("admin:secret".getBytes(StandardCharsets.UTF_8)),
+                server.getLastAuth());
+    }
+
+    @Test
+    public void commandIsSent() throws IOException {
+        server.respond(SHELLY_URL_CONTROL_RELEAY + "/1", 200, "{\"ison\":true}");
+        api.setRelayTurn(1, "ON");
+        assertEquals("turn=on", server.getLastQuery(SHELLY_URL_CONTROL_RELEAY + "/1"));
+    }
+
+    @FunctionalInterface
+    private interface ApiCall {
+        void run() throws IOException;
+    }
+
+    private static IOException assertError(String expected, ApiCall call) {
+        try {
+            call.run();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(expected));
+            return e;
+        }
+        fail("IOException expected: " + expected);
+        return null;
+    }
+}
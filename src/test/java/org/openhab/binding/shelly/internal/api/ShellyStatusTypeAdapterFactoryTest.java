@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyControlRoller;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellySettingsStatus;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusLight;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusRelay;
+import org.openhab.binding.shelly.internal.api.ShellyApiJson.ShellyStatusSensor;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Tests for {@link ShellyStatusTypeAdapterFactory}. The recorded /status documents in the test resources are parsed by the
+ * streaming adapters and by the reflective Gson adapters, both results must be identical.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyStatusTypeAdapterFactoryTest {
+    private static final String[] DEVICES    = { "shelly1", "shelly2", "bulb", "rgbw2-color", "rgbw2-white", "ht" };
+
+    private final Gson            reflective = new Gson();
+    private final Gson            streaming  = new GsonBuilder()
+            .registerTypeAdapterFactory(new ShellyStatusTypeAdapterFactory()).create();
+
+    @Test
+    public void statusMatchesReflectiveParsing() throws IOException {
+        for (String device : DEVICES) {
+            assertSameResult(device, ShellySettingsStatus.class);
+        }
+        assertSameResult("shelly1", ShellyStatusRelay.class);
+        assertSameResult("shelly2", ShellyStatusRelay.class);
+        assertSameResult("bulb", ShellyStatusLight.class);
+        assertSameResult("rgbw2-color", ShellyStatusLight.class);
+        assertSameResult("rgbw2-white", ShellyStatusLight.class);
+        assertSameResult("ht", ShellyStatusSensor.class);
+    }
+
+    @Test
+    public void relaysRollersAndMeters() throws IOException {
+        ShellySettingsStatus status = streaming.fromJson(load("shelly2"), ShellySettingsStatus.class);
+        assertEquals("CC50E3559F55", status.mac);
+        assertEquals(Integer.valueOf(-69), status.wifi_sta.rssi);
+        assertEquals(2, status.relays.size());
+        assertFalse(status.relays.get(1).ison);
+        ShellyControlRoller roller = status.rollers.get(0);
+        assertEquals("stop", roller.state);
+        assertEquals(Integer.valueOf(101), roller.current_pos);
+        assertTrue(roller.positioning);
+        assertEquals(19111.0, status.meters.get(0).total, 0.0);
+        assertEquals(3, status.meters.get(0).counters.length);
+        assertEquals(Long.valueOf(1562717876), status.meters.get(0).timestamp);
+        assertEquals("idle", status.update.status);
+        assertEquals(Long.valueOf(777069), status.uptime);
+
+        ShellyStatusRelay relay = streaming.fromJson(load("shelly2"), ShellyStatusRelay.class);
+        assertTrue(relay.mqtt.connected);
+        assertFalse(relay.cloud.enabled);
+    }
+
+    @Test
+    public void lights() throws IOException {
+        ShellySettingsStatus bulb = streaming.fromJson(load("bulb"), ShellySettingsStatus.class);
+        assertEquals(Integer.valueOf(255), bulb.lights.get(0).red);
+        assertEquals(Integer.valueOf(3243), bulb.lights.get(0).temp);
+        assertEquals(Integer.valueOf(0), bulb.lights.get(0).effect);
+
+        ShellyStatusLight white = streaming.fromJson(load("rgbw2-white"), ShellyStatusLight.class);
+        assertEquals(4, white.lights.size());
+        assertTrue(white.lights.get(0).ison);
+        assertEquals(1.2, white.lights.get(0).power, 0.0);
+        assertEquals(Integer.valueOf(50), white.lights.get(3).brightness);
+        assertEquals(4, white.meters.size());
+    }
+
+    @Test
+    public void sensor() throws IOException {
+        ShellyStatusSensor sensor = streaming.fromJson(load("ht"), ShellyStatusSensor.class);
+        assertEquals(21.25, sensor.tmp.tC, 0.0);
+        assertEquals("C", sensor.tmp.units);
+        assertTrue(sensor.tmp.is_valid);
+        assertEquals(48.5, sensor.hum.value, 0.0);
+        assertEquals(87.0, sensor.bat.value, 0.0);
+        assertArrayEquals(new String[] { "sensor" }, sensor.act_reasons);
+        assertNull(sensor.lux);
+    }
+
+    @Test
+    public void stringBooleans() throws IOException {
+        ShellySettingsStatus status = streaming.fromJson(load("shelly1"), ShellySettingsStatus.class);
+        assertTrue("\"is_valid\":\"true\"", status.meters.get(0).is_valid);
+        status = streaming.fromJson("{\"has_update\":\"false\",\"motion\":\"true\"}", ShellySettingsStatus.class);
+        assertFalse(status.has_update);
+        assertTrue(status.motion);
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        ShellySettingsStatus status = streaming.fromJson(
+                "{\"future\":{\"a\":[1,{\"b\":[2,3]}],\"c\":null},\"serial\":5,\"ext\":[[1],[2]],\"mac\":\"AABBCCDDEEFF\"}",
+                ShellySettingsStatus.class);
+        assertEquals(Integer.valueOf(5), status.serial);
+        assertEquals("AABBCCDDEEFF", status.mac);
+        assertNull(status.relays);
+    }
+
+    @Test
+    public void nullsAndUnexpectedTypes() {
+        assertNull(streaming.fromJson("null", ShellySettingsStatus.class));
+        ShellySettingsStatus status = streaming.fromJson(
+                "{\"wifi_sta\":null,\"serial\":null,\"relays\":null,\"meters\":[null,{\"power\":\"12.5\"}],\"tmp\":\"broken\","
+                        + "\"uptime\":{\"s\":1},\"time\":null,\"act_reasons\":[\"button\",null]}",
+                ShellySettingsStatus.class);
+        assertNull(status.wifi_sta);
+        assertNull(status.serial);
+        assertNull(status.relays);
+        assertNull(status.meters.get(0));
+        assertEquals("numbers sent as strings", 12.5, status.meters.get(1).power, 0.0);
+        assertNull(status.tmp);
+        assertNull(status.uptime);
+        assertNull(status.time);
+        assertArrayEquals(new String[] { "button", null }, status.act_reasons);
+    }
+
+    /**
+     * Parse benchmark, streaming vs. reflective adapters: documents/sec and allocated bytes per document (where the JVM reports
+     * thread allocations)
+     */
+    @Test
+    public void parseThroughput() throws IOException {
+        String[] documents = new String[DEVICES.length];
+        for (int i = 0; i < DEVICES.length; i++) {
+            documents[i] = load(DEVICES[i]);
+        }
+        int iterations = 20000;
+        measure("reflective", reflective, documents, iterations / 10); // warm up
+        measure("streaming", streaming, documents, iterations / 10);
+        long[] reflectiveResult = measure("reflective", reflective, documents, iterations);
+        long[] streamingResult = measure("streaming", streaming, documents, iterations);
+        assertEquals("both parsers read the same documents", reflectiveResult[2], streamingResult[2]);
+    }
+
+    private long[] measure(String name, Gson gson, String[] documents, int iterations) {
+        int count = iterations * documents.length;
+        long checksum = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String document : documents) {
+                ShellySettingsStatus status = gson.fromJson(document, ShellySettingsStatus.class);
+                checksum += status.uptime;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = allocated >= 0 ? allocatedBytes() - allocated : -1;
+        if (iterations >= 10000) {
+            System.out.println(String.format("Status parser %s: %d documents in %dms, %.0f documents/sec, %s bytes/document", name,
+                    count, nanos / 1000000, count * 1e9 / nanos, allocated >= 0 ? String.valueOf(allocated / count) : "n/a"));
+        }
+        return new long[] { nanos, allocated, checksum };
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private <T> void assertSameResult(String device, Class<T> classOfT) throws IOException {
+        String json = load(device);
+        assertEquals(device + " as " + classOfT.getSimpleName(), reflective.toJsonTree(reflective.fromJson(json, classOfT)),
+                reflective.toJsonTree(streaming.fromJson(json, classOfT)));
+    }
+
+    private String load(String device) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("status-" + device + ".json")) {
+            assertNotNull("status-" + device + ".json", in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openhab.binding.shelly.internal.config.ShellyThingConfiguration;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The {@link ShellyTestServer} is a local http server standing in for a device. Responses are registered per path, each response
+ * can be delayed to simulate a slow device.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+class ShellyTestServer {
+    private final HttpServer            server;
+    private final ExecutorService       executor;
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger         requests  = new AtomicInteger();
+    private final Map<String, String>   lastQuery = new ConcurrentHashMap<>();
+    private volatile String             lastAuth  = "";
+
+    static {
+        // headers and body are written separately, without TCP_NODELAY each response stalls on the delayed ack of the client
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static class Response {
+        final int    status;
+        final byte[] body;
+        final long   delayMs;
+
+        Response(int status, String body, long delayMs) {
+            this.status = status;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+            this.delayMs = delayMs;
+        }
+    }
+
+    ShellyTestServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 100);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    ShellyTestServer respond(String path, int status, String body) {
+        return respond(path, status, body, 0);
+    }
+
+    ShellyTestServer respond(String path, int status, String body, long delayMs) {
+        responses.put(path, new Response(status, body, delayMs));
+        return this;
+    }
+
+    /**
+     * @return thing configuration pointing to this server
+     */
+    ShellyThingConfiguration getConfig() {
+        ShellyThingConfiguration config = new ShellyThingConfiguration();
+        config.deviceIp = InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort();
+        return config;
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    String getLastQuery(String path) {
+        return lastQuery.get(path);
+    }
+
+    String getLastAuth() {
+        return lastAuth;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        lastQuery.put(path, query != null ? query : "");
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        lastAuth = auth != null ? auth : "";
+        try (InputStream in = exchange.getRequestBody(); OutputStream out = exchange.getResponseBody()) {
+            drain(in);
+            Response response = responses.get(path);
+            if (response == null) {
+                response = new Response(404, "Not Found", 0);
+            }
+            if (response.delayMs > 0) {
+                try {
+                    Thread.sleep(response.delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, response.body.length > 0 ? response.body.length : -1);
+            if (response.body.length > 0) {
+                out.write(response.body);
+            }
+        } catch (IOException e) {
+            // client aborted the request
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[256];
+        while (in.read(buffer) > 0) {
+            // request body is not used
+        }
+    }
+
+    static String load(Class<?> clazz, String name) throws IOException {
+        try (InputStream in = clazz.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Resource " + name + " not found");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.coap;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.coap.ShellyCoIoTDecoder.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShellyCoIoTDecoder}, including truncated and malformed packets. {@link #packet} builds packets in the layout the
+ * devices send: device id, validity and serial options followed by the JSON payload.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyCoIoTDecoderTest {
+    static final String              DEVICE_ID = "SHSW-1#A4CF12F3CB3D#1";
+    static final String              PAYLOAD   = "{\"G\":[[0,112,1]]}";
+
+    private final ShellyCoIoTDecoder decoder   = new ShellyCoIoTDecoder();
+
+    @Test
+    public void decodeStatusPacket() {
+        assertTrue(decoder.decode(ByteBuffer.wrap(packet(COIOT_CODE_STATUS, DEVICE_ID, 38400, 4711, PAYLOAD))));
+        assertTrue(decoder.isStatus());
+        assertEquals(0x1234, decoder.getMessageId());
+        assertEquals(DEVICE_ID, decoder.getDeviceId());
+        assertEquals("SHSW-1", decoder.getDeviceType());
+        assertEquals("A4CF12F3CB3D", decoder.getDeviceMac());
+        assertEquals(38400, decoder.getValidity());
+        assertEquals(4711, decoder.getSerial());
+        assertEquals(PAYLOAD, decoder.getPayload());
+    }
+
+    @Test
+    public void decodeDescriptionResponse() {
+        assertTrue(decoder.decode(ByteBuffer.wrap(packet(COAP_CODE_CONTENT, DEVICE_ID, 0, -1, "{\"blk\":[]}"))));
+        assertFalse(decoder.isStatus());
+        assertEquals(COAP_CODE_CONTENT, decoder.getCode());
+        assertEquals(-1, decoder.getSerial());
+    }
+
+    @Test
+    public void deviceIdWithoutMac() {
+        assertTrue(decoder.decode(ByteBuffer.wrap(packet(COIOT_CODE_STATUS, "SHSW-1", 0, 1, ""))));
+        assertEquals("SHSW-1", decoder.getDeviceType());
+        assertEquals("", decoder.getDeviceMac());
+        assertEquals("", decoder.getPayload());
+    }
+
+    @Test
+    public void decodeWithinBuffer() {
+        byte[] data = packet(COIOT_CODE_STATUS, DEVICE_ID, 38400, 17, PAYLOAD);
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 20);
+        buffer.position(10);
+        buffer.put(data);
+        buffer.flip();
+        buffer.position(10);
+        assertTrue(decoder.decode(buffer));
+        assertEquals(10, buffer.position());
+        assertEquals(DEVICE_ID, decoder.getDeviceId());
+        assertEquals(PAYLOAD, decoder.getPayload());
+    }
+
+    @Test
+    public void packetWithoutDeviceIdIsRejected() {
+        ByteArrayOutputStream out = header(COIOT_CODE_STATUS);
+        option(out, COIOT_OPTION_SERIAL, 0, new byte[] { 1 });
+        assertFalse(decoder.decode(ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    public void invalidHeaderIsRejected() {
+        byte[] data = packet(COIOT_CODE_STATUS, DEVICE_ID, 38400, 17, PAYLOAD);
+        byte[] version = data.clone();
+        version[0] = (byte) 0x90; // version 2
+        assertFalse(decoder.decode(ByteBuffer.wrap(version)));
+
+        byte[] token = data.clone();
+        token[0] = (byte) 0x59; // token length 9
+        assertFalse(decoder.decode(ByteBuffer.wrap(token)));
+
+        assertFalse(decoder.decode(ByteBuffer.wrap(new byte[] { 0x50, 30, 0 })));
+        assertFalse(decoder.decode(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void reservedOptionNibbleIsRejected() {
+        ByteArrayOutputStream out = header(COIOT_CODE_STATUS);
+        out.write(0xf1);
+        out.write(0);
+        assertFalse(decoder.decode(ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    public void truncatedOptionExtensionIsRejected() {
+        // 2 byte delta extension (3332) cut after the first byte
+        ByteArrayOutputStream out = header(COIOT_CODE_STATUS);
+        out.write(0xe0 | 13);
+        out.write((COIOT_OPTION_GLOBALID - 269) >> 8);
+        assertFalse(decoder.decode(ByteBuffer.wrap(out.toByteArray())));
+
+        // 1 byte length extension missing
+        out = header(COIOT_CODE_STATUS);
+        out.write(0xe0 | 13);
+        out.write((COIOT_OPTION_GLOBALID - 269) >> 8);
+        out.write((COIOT_OPTION_GLOBALID - 269) & 0xff);
+        assertFalse(decoder.decode(ByteBuffer.wrap(out.toByteArray())));
+
+        // option value shorter than its length
+        out = header(COIOT_CODE_STATUS);
+        option(out, COIOT_OPTION_GLOBALID, 0, DEVICE_ID.getBytes(StandardCharsets.US_ASCII));
+        byte[] data = out.toByteArray();
+        assertFalse(decoder.decode(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 1))));
+    }
+
+    @Test
+    public void everyTruncationIsHandled() {
+        byte[] data = packet(COIOT_CODE_STATUS, DEVICE_ID, 38400, 4711, PAYLOAD);
+        int idEnd = 4 + 1 + 2 + 1 + DEVICE_ID.length(); // header, option header, delta and length extension, device id
+        for (int length = 0; length < data.length; length++) {
+            boolean valid = decoder.decode(ByteBuffer.wrap(Arrays.copyOf(data, length)));
+            if (length < idEnd) {
+                assertFalse("packet truncated to " + length + " bytes", valid);
+            }
+        }
+    }
+
+    @Test
+    public void decoderIsReusable() {
+        assertTrue(decoder.decode(ByteBuffer.wrap(packet(COIOT_CODE_STATUS, DEVICE_ID, 38400, 4711, PAYLOAD))));
+        assertTrue(decoder.decode(ByteBuffer.wrap(packet(COIOT_CODE_STATUS, "SHPLG-S#AABBCCDDEEFF#1", 0, -1, ""))));
+        assertEquals("SHPLG-S", decoder.getDeviceType());
+        assertEquals(-1, decoder.getSerial());
+        assertEquals(0, decoder.getValidity());
+        assertEquals("", decoder.getPayload());
+    }
+
+    /**
+     * Decoder throughput, the listener decodes every multicast packet of all devices on the network
+     */
+    @Test
+    public void decodeThroughput() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2048);
+        buffer.put(packet(COIOT_CODE_STATUS, DEVICE_ID, 38400, 4711, PAYLOAD));
+        buffer.flip();
+        int packets = 1000000;
+        long serials = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < packets; i++) {
+            assertTrue(decoder.decode(buffer));
+            serials += decoder.getSerial();
+            decoder.getDeviceMac();
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(4711L * packets, serials);
+        System.out.println(String.format("CoIoT decoder: %d packets in %dms, %.0f packets/sec", packets, nanos / 1000000,
+                packets * 1e9 / nanos));
+    }
+
+    /**
+     * Build a CoIoT packet: non-confirmable CoAP message with the global device id, validity and serial options
+     *
+     * @param serial status serial, -1: no serial option
+     */
+    static byte[] packet(int code, String deviceId, int validity, int serial, String payload) {
+        ByteArrayOutputStream out = header(code);
+        option(out, COIOT_OPTION_GLOBALID, 0, deviceId.getBytes(StandardCharsets.US_ASCII));
+        option(out, COIOT_OPTION_VALIDITY, COIOT_OPTION_GLOBALID, new byte[] { (byte) (validity >> 8), (byte) validity });
+        if (serial >= 0) {
+            option(out, COIOT_OPTION_SERIAL, COIOT_OPTION_VALIDITY, new byte[] { (byte) (serial >> 8), (byte) serial });
+        }
+        if (!payload.isEmpty()) {
+            out.write(0xff);
+            byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+            out.write(data, 0, data.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteArrayOutputStream header(int code) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x50); // version 1, non-confirmable, no token
+        out.write(code);
+        out.write(0x12);
+        out.write(0x34);
+        return out;
+    }
+
+    private static void option(ByteArrayOutputStream out, int number, int previous, byte[] value) {
+        int delta = number - previous;
+        out.write((nibble(delta) << 4) | nibble(value.length));
+        extension(out, delta);
+        extension(out, value.length);
+        out.write(value, 0, value.length);
+    }
+
+    private static int nibble(int value) {
+        return value < 13 ? value : value < 269 ? 13 : 14;
+    }
+
+    private static void extension(ByteArrayOutputStream out, int value) {
+        if (value >= 269) {
+            out.write((value - 269) >> 8);
+            out.write((value - 269) & 0xff);
+        } else if (value >= 13) {
+            out.write(value - 13);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.coap;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.coap.ShellyCoIoTDecoder.*;
+import static org.openhab.binding.shelly.internal.coap.ShellyCoIoTDecoderTest.*;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.shelly.internal.ShellyHandlerFactory;
+
+/**
+ * Replay test for {@link ShellyCoIoTListener}: a local UDP sender replays CoIoT packets to the listener, the decoded updates are
+ * collected by the handler factory.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyCoIoTListenerTest {
+    private final Map<String, Integer> serials = new ConcurrentHashMap<>(); // mac -> last serial
+    private final AtomicInteger        updates = new AtomicInteger();
+    private volatile CountDownLatch    pending = new CountDownLatch(0);
+    private volatile long              lastUpdate;
+
+    private ShellyCoIoTListener        listener;
+    private DatagramSocket             sender;
+    private int                        port;
+
+    @Before
+    public void setUp() throws IOException {
+        ShellyHandlerFactory handlerFactory = new ShellyHandlerFactory() {
+            @Override
+            public void onCoIoTUpdate(String deviceType, String mac, int serial) {
+                serials.put(mac, serial);
+                updates.incrementAndGet();
+                lastUpdate = System.nanoTime();
+                pending.countDown();
+            }
+        };
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        listener = new ShellyCoIoTListener(handlerFactory, port);
+        listener.start();
+        sender = new DatagramSocket();
+    }
+
+    @After
+    public void tearDown() {
+        sender.close();
+        listener.stop();
+    }
+
+    @Test
+    public void replayStatusUpdates() throws Exception {
+        List<byte[]> packets = new ArrayList<>();
+        packets.add(packet(COIOT_CODE_STATUS, "SHSW-1#A4CF12F3CB3D#1", 38400, 1, "{\"G\":[[0,112,0]]}"));
+        packets.add(new byte[] { 0x50, 30, 0 }); // truncated
+        packets.add(packet(COAP_CODE_CONTENT, "SHSW-1#A4CF12F3CB3D#1", 0, -1, "{\"blk\":[]}")); // description, no update
+        packets.add(packet(COIOT_CODE_STATUS, "SHPLG-S#AABBCCDDEEFF#1", 38400, 7, "{\"G\":[[0,111,12.5]]}"));
+        packets.add(packet(COIOT_CODE_STATUS, "SHSW-1#A4CF12F3CB3D#1", 38400, 2, "{\"G\":[[0,112,1]]}"));
+
+        pending = new CountDownLatch(3);
+        for (byte[] packet : packets) {
+            send(packet);
+        }
+        assertTrue("status updates received", pending.await(5, TimeUnit.SECONDS));
+        assertEquals(3, updates.get());
+        assertEquals(Integer.valueOf(2), serials.get("A4CF12F3CB3D"));
+        assertEquals(Integer.valueOf(7), serials.get("AABBCCDDEEFF"));
+    }
+
+    /**
+     * Receive throughput of the listener, packets are paced in bursts to stay within the socket buffers
+     */
+    @Test
+    public void replayThroughput() throws Exception {
+        int devices = 250;
+        int rounds = 40;
+        List<byte[]> packets = new ArrayList<>();
+        for (int i = 0; i < devices; i++) {
+            packets.add(packet(COIOT_CODE_STATUS, String.format("SHSW-1#A4CF12%06X#1", i), 38400, i, "{\"G\":[[0,112,1]]}"));
+        }
+
+        pending = new CountDownLatch(devices * rounds);
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < devices; i++) {
+                send(packets.get(i));
+                if (i % 50 == 49) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        boolean complete = pending.await(5, TimeUnit.SECONDS);
+        long nanos = lastUpdate - start;
+        int received = updates.get();
+        System.out.println(String.format("CoIoT listener: %d of %d packets received in %dms, %.0f packets/sec", received,
+                devices * rounds, nanos / 1000000, received * 1e9 / nanos));
+        assertTrue("UDP may drop packets, but most of them must be decoded", complete || (received > devices * rounds / 2));
+        assertEquals(devices, serials.size());
+    }
+
+    private void send(byte[] packet) throws IOException {
+        sender.send(new DatagramPacket(packet, packet.length, InetAddress.getLoopbackAddress(), port));
+    }
+}
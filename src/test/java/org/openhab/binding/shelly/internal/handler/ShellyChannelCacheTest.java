@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShellyChannelCache}
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyChannelCacheTest {
+    private final ShellyChannelCache cache = new ShellyChannelCache();
+
+    @Test
+    public void channelIdsAreBuiltOnce() {
+        String id = cache.getChannelId("relay1", "output");
+        assertEquals("relay1#output", id);
+        assertSame(id, cache.getChannelId("relay1", "output"));
+        assertEquals("relay2#output", cache.getChannelId("relay2", "output"));
+    }
+
+    @Test
+    public void onlyChangesArePublished() {
+        String id = cache.getChannelId("meter", "currentWatts");
+        assertTrue("first update", cache.update(id, new DecimalType(12.5)));
+        assertFalse(cache.update(id, new DecimalType(12.5)));
+        assertTrue(cache.update(id, new DecimalType(13)));
+        assertEquals(new DecimalType(13), cache.get(id));
+        assertEquals(2, cache.getPublished());
+        assertEquals(1, cache.getSuppressed());
+    }
+
+    @Test
+    public void forcedUpdateIsPublished() {
+        String id = cache.getChannelId("meter", "totalKWH");
+        cache.update(id, new DecimalType(1.5));
+        cache.put(id, new DecimalType(1.5));
+        assertEquals(2, cache.getPublished());
+        assertFalse("the forced state is cached", cache.update(id, new DecimalType(1.5)));
+    }
+
+    @Test
+    public void invalidatedChannelIsPublishedAgain() {
+        String id = cache.getChannelId("relay", "output");
+        cache.update(id, OnOffType.ON);
+        cache.invalidate(id);
+        assertNull(cache.get(id));
+        assertTrue(cache.update(id, OnOffType.ON));
+
+        cache.clear();
+        assertTrue(cache.update(id, OnOffType.ON));
+    }
+
+    @Test
+    public void valuesAreConvertedToStates() {
+        assertEquals(new StringType("idle"), ShellyChannelCache.toState("idle"));
+        assertEquals(new DecimalType(42), ShellyChannelCache.toState(42));
+        assertEquals(new DecimalType(42), ShellyChannelCache.toState(42L));
+        assertEquals(new DecimalType(0.5), ShellyChannelCache.toState(0.5));
+        assertEquals(OnOffType.ON, ShellyChannelCache.toState(true));
+        assertEquals(OnOffType.OFF, ShellyChannelCache.toState(false));
+        State state = new StringType("state");
+        assertSame(state, ShellyChannelCache.toState(state));
+        assertNull(ShellyChannelCache.toState(new Object()));
+    }
+
+    @Test
+    public void concurrentUpdatesPublishEachChangeOnce() throws InterruptedException {
+        String id = cache.getChannelId("sensor", "temperature");
+        int threads = 8;
+        AtomicInteger published = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (cache.update(id, new DecimalType(21.5))) {
+                        published.incrementAndGet();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals("the unchanged state is published only once", 1, published.get());
+        assertEquals(threads * 1000 - 1, cache.getSuppressed());
+    }
+}
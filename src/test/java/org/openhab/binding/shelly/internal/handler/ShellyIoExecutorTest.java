@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.ShellyBindingConstants.IO_MAX_REQUESTS;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShellyIoExecutor}, including a load test: the poll cycle of the responsive devices must not grow with the number
+ * of slow devices.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyIoExecutorTest {
+    private static final int    FAST_DEVICES = 100;
+    private static final long   FAST_MS      = 2;
+    private static final long   SLOW_MS      = 500; // a device which runs into the request timeout
+
+    private final AtomicInteger inFlight     = new AtomicInteger();
+    private final AtomicInteger maxInFlight  = new AtomicInteger();
+    private ShellyIoExecutor    executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void virtualThreadsWhenAvailable() {
+        executor = new ShellyIoExecutor(IO_MAX_REQUESTS);
+        assertEquals("virtual threads are available since Java 21", getJavaVersion() >= 21, executor.isVirtual());
+    }
+
+    @Test
+    public void permitCapIsRespected() throws InterruptedException {
+        int maxRequests = 10;
+        executor = new ShellyIoExecutor(maxRequests);
+        int tasks = 200;
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                request(5);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= maxRequests);
+        assertEquals("the cap is used", maxRequests, maxInFlight.get());
+    }
+
+    @Test
+    public void failingTaskReleasesItsPermit() throws InterruptedException {
+        int maxRequests = 4;
+        executor = new ShellyIoExecutor(maxRequests);
+        CountDownLatch failed = new CountDownLatch(maxRequests);
+        for (int i = 0; i < maxRequests; i++) {
+            executor.execute(() -> {
+                failed.countDown();
+                throw new IllegalStateException("request failed");
+            });
+        }
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch running = new CountDownLatch(maxRequests);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < maxRequests; i++) {
+            executor.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue("all permits are available again", running.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void shutdownInterruptsRunningTasks() throws InterruptedException {
+        executor = new ShellyIoExecutor(2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Load test: the slow devices are dispatched first in each cycle and occupy their permits for the full request timeout, the
+     * responsive devices share the remaining permits. For comparison the same cycles run on a pool sized like the shared scheduler.
+     */
+    @Test
+    public void pollCycleStaysFlatWithSlowDevices() throws InterruptedException {
+        executor = new ShellyIoExecutor(IO_MAX_REQUESTS);
+        ExecutorService scheduler = Executors.newFixedThreadPool(IO_MAX_REQUESTS / 2);
+        try {
+            long baseline = pollCycle(executor, 0);
+            for (int slow = IO_MAX_REQUESTS / 4; slow < IO_MAX_REQUESTS; slow += IO_MAX_REQUESTS / 4) {
+                long cycle = pollCycle(executor, slow);
+                long shared = pollCycle(scheduler, slow);
+                System.out.println(String.format(
+                        "Poll cycle of %d devices with %d slow devices: %dms (I/O executor), %dms (shared pool of %d threads)",
+                        FAST_DEVICES, slow, cycle, shared, IO_MAX_REQUESTS / 2));
+                assertTrue("responsive devices don't wait for a slow device, cycle " + cycle + "ms, baseline " + baseline + "ms",
+                        cycle < SLOW_MS / 2);
+            }
+            assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= IO_MAX_REQUESTS);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return ms until all responsive devices are polled, the slow devices are complete when the method returns
+     */
+    private long pollCycle(Executor executor, int slowDevices) throws InterruptedException {
+        CountDownLatch slow = new CountDownLatch(slowDevices);
+        CountDownLatch fast = new CountDownLatch(FAST_DEVICES);
+        long start = System.nanoTime();
+        for (int i = 0; i < slowDevices; i++) {
+            executor.execute(() -> {
+                request(SLOW_MS);
+                slow.countDown();
+            });
+        }
+        for (int i = 0; i < FAST_DEVICES; i++) {
+            executor.execute(() -> {
+                request(FAST_MS);
+                fast.countDown();
+            });
+        }
+        assertTrue(fast.await(30, TimeUnit.SECONDS));
+        long cycle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(slow.await(30, TimeUnit.SECONDS));
+        return cycle;
+    }
+
+    private void request(long ms) {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+}
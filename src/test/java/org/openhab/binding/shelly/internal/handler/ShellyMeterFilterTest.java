@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShellyMeterFilter}
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyMeterFilterTest {
+    private static final String POWER = "meter1#currentWatts";
+    private static final String TOTAL = "meter1#totalKWH";
+
+    private long                now   = 1000000;
+
+    @Test
+    public void disabledFilterPassesEveryChange() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(0, 0, 0, () -> now);
+        assertTrue(filter.accept(POWER, 10.0));
+        assertTrue(filter.accept(POWER, 10.01));
+        assertFalse("unchanged reading", filter.accept(POWER, 10.01));
+        assertTrue(filter.acceptAbsolute(TOTAL, 1.001, 0));
+        assertTrue(filter.acceptAbsolute(TOTAL, 1.002, 0));
+    }
+
+    @Test
+    public void absoluteDeadband() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(1, 0, 0, () -> now);
+        assertTrue("first reading", filter.accept(POWER, 100.0));
+        assertFalse(filter.accept(POWER, 100.5));
+        assertFalse(filter.accept(POWER, 101.0));
+        assertTrue(filter.accept(POWER, 101.5));
+        // the deadband is measured against the last published value, not the last reading
+        assertFalse(filter.accept(POWER, 100.9));
+        assertTrue(filter.accept(POWER, 100.4));
+    }
+
+    @Test
+    public void relativeDeadband() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(0, 2, 0, () -> now);
+        assertTrue(filter.accept(POWER, 1000.0));
+        assertFalse("within 2%", filter.accept(POWER, 1015.0));
+        assertTrue(filter.accept(POWER, 1025.0));
+
+        assertTrue(filter.accept(POWER, 10.0));
+        assertFalse(filter.accept(POWER, 10.1));
+        assertTrue(filter.accept(POWER, 10.3));
+    }
+
+    @Test
+    public void largerDeadbandWins() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(5, 2, 0, () -> now);
+        assertTrue(filter.accept(POWER, 100.0));
+        assertFalse("2% are 2W, but the absolute deadband is 5W", filter.accept(POWER, 104.0));
+        assertTrue(filter.accept(POWER, 106.0));
+    }
+
+    @Test
+    public void switchingOnOrOffIsAlwaysPublished() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(10, 50, 0, () -> now);
+        assertTrue(filter.accept(POWER, 3.0));
+        assertTrue("device turned off", filter.accept(POWER, 0.0));
+        assertFalse(filter.accept(POWER, 0.0));
+        assertTrue("device turned on", filter.accept(POWER, 0.5));
+    }
+
+    @Test
+    public void countersIgnoreRelativeDeadband() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(0, 10, 0, () -> now);
+        assertTrue(filter.acceptAbsolute(TOTAL, 5000.0));
+        assertTrue("10% of the counter would suppress it for a long time", filter.acceptAbsolute(TOTAL, 5001.0));
+    }
+
+    @Test
+    public void channelSpecificDeadband() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(1, 0, 0, () -> now);
+        assertTrue(filter.acceptAbsolute(TOTAL, 12.34, 0.01));
+        assertFalse(filter.acceptAbsolute(TOTAL, 12.345, 0.01));
+        assertTrue(filter.acceptAbsolute(TOTAL, 12.355, 0.01));
+    }
+
+    @Test
+    public void maxSilenceRepublishes() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(5, 0, 300, () -> now);
+        assertTrue(filter.accept(POWER, 50.0));
+        now += 299 * 1000;
+        assertFalse(filter.accept(POWER, 51.0));
+        now += 1000;
+        assertTrue("max silence elapsed", filter.accept(POWER, 51.0));
+        now += 1000;
+        assertFalse("silence interval restarts with the publish", filter.accept(POWER, 52.0));
+    }
+
+    @Test
+    public void channelsAreIndependent() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(1, 0, 0, () -> now);
+        assertTrue(filter.accept("meter1#currentWatts", 100.0));
+        assertTrue(filter.accept("meter2#currentWatts", 100.5));
+        assertFalse(filter.accept("meter1#currentWatts", 100.5));
+    }
+
+    @Test
+    public void clearPassesNextReading() {
+        ShellyMeterFilter filter = new ShellyMeterFilter(10, 0, 0, () -> now);
+        assertTrue(filter.accept(POWER, 100.0));
+        assertFalse(filter.accept(POWER, 101.0));
+        filter.clear();
+        assertTrue(filter.accept(POWER, 101.0));
+    }
+}
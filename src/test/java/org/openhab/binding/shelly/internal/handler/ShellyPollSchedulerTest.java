@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShellyPollScheduler}. The tick job is captured and advanced by the test, dispatched polls are queued and run by
+ * the test, so the wheel runs on simulated time.
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyPollSchedulerTest {
+    private static final String         KEY        = "shelly:shelly1:test";
+
+    private final List<Runnable>        dispatched = new ArrayList<>();
+    private final AtomicInteger         polls      = new AtomicInteger();
+    private boolean                     reject     = false;
+    private Runnable                    tick;
+    private ScheduledThreadPoolExecutor scheduler;
+    private ShellyPollScheduler         pollScheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+                tick = command;
+                return schedule(() -> {
+                }, 1, TimeUnit.DAYS);
+            }
+        };
+        pollScheduler = new ShellyPollScheduler(scheduler, task -> {
+            if (reject) {
+                throw new RejectedExecutionException("executor is busy");
+            }
+            dispatched.add(task);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        pollScheduler.stop();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void registeredTaskWaitsForSchedule() {
+        pollScheduler.register(KEY, polls::incrementAndGet);
+        assertNotNull("tick job started", tick);
+        advance(100);
+        assertTrue(dispatched.isEmpty());
+    }
+
+    @Test
+    public void scheduleOfUnknownKey() {
+        assertFalse(pollScheduler.schedule(KEY, 1));
+    }
+
+    @Test
+    public void pollIsDispatchedWhenDue() {
+        register();
+        pollScheduler.schedule(KEY, 5);
+        advance(4);
+        assertTrue(dispatched.isEmpty());
+        advance(1);
+        runDispatched();
+        assertEquals(1, polls.get());
+        advance(100);
+        assertTrue("a poll runs only once per schedule", dispatched.isEmpty());
+    }
+
+    @Test
+    public void earliestDueTimeWins() {
+        register();
+        pollScheduler.schedule(KEY, 30);
+        pollScheduler.schedule(KEY, 3);
+        pollScheduler.schedule(KEY, 20);
+        advance(2);
+        assertTrue(dispatched.isEmpty());
+        advance(1);
+        assertEquals(1, dispatched.size());
+        runDispatched();
+        advance(100);
+        assertTrue("the later schedules were replaced", dispatched.isEmpty());
+    }
+
+    @Test
+    public void delayBeyondOneRoundOfTheWheel() {
+        register();
+        pollScheduler.schedule(KEY, 100);
+        advance(99);
+        assertTrue("the slot is passed once before the poll is due", dispatched.isEmpty());
+        advance(1);
+        assertEquals(1, dispatched.size());
+    }
+
+    @Test
+    public void pollIsRequeuedWhileRunning() {
+        register();
+        pollScheduler.schedule(KEY, 1);
+        advance(1);
+        assertEquals(1, dispatched.size());
+        Runnable running = dispatched.remove(0);
+
+        // the poll requests the next update before it completes
+        pollScheduler.schedule(KEY, 1);
+        advance(3);
+        assertTrue("no second poll while the first is running", dispatched.isEmpty());
+
+        running.run();
+        advance(1);
+        assertEquals(1, dispatched.size());
+        runDispatched();
+        assertEquals(2, polls.get());
+    }
+
+    @Test
+    public void rejectedDispatchIsRetried() {
+        register();
+        pollScheduler.schedule(KEY, 1);
+        reject = true;
+        advance(1);
+        assertTrue(dispatched.isEmpty());
+
+        reject = false;
+        advance(1);
+        assertEquals("rejected poll is dispatched on the next tick", 1, dispatched.size());
+        runDispatched();
+        assertEquals(1, polls.get());
+    }
+
+    @Test
+    public void failingPollDoesntBlockTheEntry() {
+        pollScheduler.register(KEY, () -> {
+            polls.incrementAndGet();
+            throw new IllegalStateException("poll failed");
+        });
+        pollScheduler.schedule(KEY, 1);
+        advance(1);
+        runDispatched();
+        pollScheduler.schedule(KEY, 1);
+        advance(1);
+        runDispatched();
+        assertEquals(2, polls.get());
+    }
+
+    @Test
+    public void unregisterCancelsPoll() {
+        register();
+        pollScheduler.schedule(KEY, 2);
+        pollScheduler.unregister(KEY);
+        advance(10);
+        assertTrue(dispatched.isEmpty());
+        assertFalse(pollScheduler.schedule(KEY, 1));
+    }
+
+    @Test
+    public void thingsInTheSameSlotAreDispatchedTogether() {
+        for (int i = 0; i < 100; i++) {
+            pollScheduler.register(KEY + i, polls::incrementAndGet);
+            pollScheduler.schedule(KEY + i, 10);
+        }
+        advance(9);
+        assertTrue(dispatched.isEmpty());
+        advance(1);
+        assertEquals(100, dispatched.size());
+        runDispatched();
+        assertEquals(100, polls.get());
+    }
+
+    private void register() {
+        pollScheduler.register(KEY, polls::incrementAndGet);
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            tick.run();
+        }
+    }
+
+    private void runDispatched() {
+        List<Runnable> tasks = new ArrayList<>(dispatched);
+        dispatched.clear();
+        tasks.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.openhab.binding.shelly.internal.handler;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.shelly.internal.handler.ShellyWakeTracker.WAKE_WINDOW_MS;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShellyWakeTracker}
+ *
+ * @author Markus Michels - Initial contribution
+ */
+public class ShellyWakeTrackerTest {
+    private static final long  START  = 1000000;
+    private static final long  PERIOD = 600000;   // device reports every 10min
+
+    private ShellyWakeTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new ShellyWakeTracker();
+    }
+
+    @Test
+    public void pollsUntilFirstReport() {
+        assertTrue(tracker.shouldPoll(START));
+        assertEquals(-1, tracker.getDelayUntilWake(START));
+        assertEquals(0, tracker.getLastWake());
+    }
+
+    @Test
+    public void pollsOnlyWithinWakeWindowWhileLearning() {
+        tracker.onWake(START);
+        assertFalse(tracker.isLearned());
+        assertTrue(tracker.shouldPoll(START + WAKE_WINDOW_MS - 1));
+        assertFalse("device is sleeping", tracker.shouldPoll(START + WAKE_WINDOW_MS));
+        assertEquals(-1, tracker.getDelayUntilWake(START + WAKE_WINDOW_MS));
+    }
+
+    @Test
+    public void learnsPeriod() {
+        tracker.onWake(START);
+        tracker.onWake(START + PERIOD);
+        assertTrue(tracker.isLearned());
+
+        long lastWake = START + PERIOD;
+        assertFalse(tracker.shouldPoll(lastWake + PERIOD / 2));
+        assertTrue("expected wake-up", tracker.shouldPoll(lastWake + PERIOD));
+        assertTrue("window before the expected wake-up", tracker.shouldPoll(lastWake + PERIOD - WAKE_WINDOW_MS));
+        assertFalse(tracker.shouldPoll(lastWake + PERIOD + WAKE_WINDOW_MS));
+    }
+
+    @Test
+    public void repeatedReportsOfOneWakeUpDontCount() {
+        tracker.onWake(START);
+        tracker.onWake(START + 1000);
+        tracker.onWake(START + 2000);
+        assertFalse(tracker.isLearned());
+    }
+
+    @Test
+    public void periodIsSmoothed() {
+        tracker.onWake(START);
+        tracker.onWake(START + PERIOD);
+        tracker.onWake(START + PERIOD + 2 * PERIOD); // one report lost: the interval counts with 30% only
+        long lastWake = START + 3 * PERIOD;
+        long smoothed = Math.round(0.7 * PERIOD + 0.3 * 2 * PERIOD);
+        assertTrue(tracker.shouldPoll(lastWake + smoothed));
+        assertFalse(tracker.shouldPoll(lastWake + PERIOD));
+    }
+
+    @Test
+    public void delayUntilWake() {
+        tracker.onWake(START);
+        tracker.onWake(START + PERIOD);
+        long lastWake = START + PERIOD;
+        // poll 1s after the expected wake-up
+        assertEquals(PERIOD + 1000, tracker.getDelayUntilWake(lastWake));
+        assertEquals(PERIOD / 2 + 1000, tracker.getDelayUntilWake(lastWake + PERIOD / 2));
+        // the expected wake-up was handled, wait for the next one
+        assertEquals(PERIOD, tracker.getDelayUntilWake(lastWake + PERIOD + 1000));
+    }
+
+    @Test
+    public void missedWakeUpsKeepTheSchedule() {
+        tracker.onWake(START);
+        tracker.onWake(START + PERIOD);
+        long lastWake = START + PERIOD;
+        // reports for 3 wake-ups were lost, the device keeps its interval
+        assertTrue(tracker.shouldPoll(lastWake + 4 * PERIOD));
+        assertFalse(tracker.shouldPoll(lastWake + 4 * PERIOD + PERIOD / 2));
+        assertEquals(PERIOD / 2 + 1000, tracker.getDelayUntilWake(lastWake + 4 * PERIOD + PERIOD / 2));
+    }
+}